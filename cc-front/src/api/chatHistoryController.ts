@@ -35,6 +35,24 @@ export async function listAppChatHistory(
   })
 }
 
+/** 此处后端没有提供注释 GET /chatHistory/app/${param0}/cursor */
+export async function listAppChatHistoryByCursor(
+  // 叠加生成的Param类型 (非body参数swagger默认没有生成对象)
+  params: API.listAppChatHistoryByCursorParams,
+  options?: { [key: string]: any }
+) {
+  const { appId: param0, ...queryParams } = params
+  return request<API.BaseResponseChatHistoryCursorPageVO>(`/chatHistory/app/${param0}/cursor`, {
+    method: 'GET',
+    params: {
+      // pageSize has a default value: 10
+      pageSize: '10',
+      ...queryParams,
+    },
+    ...(options || {}),
+  })
+}
+
 /** 此处后端没有提供注释 GET /chatHistory/getInfo/${param0} */
 export async function getInfo1(
   // 叠加生成的Param类型 (非body参数swagger默认没有生成对象)
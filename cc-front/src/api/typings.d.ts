@@ -75,6 +75,12 @@ declare namespace API {
     message?: string
   }
 
+  type BaseResponseChatHistoryCursorPageVO = {
+    code?: number
+    data?: ChatHistoryCursorPageVO
+    message?: string
+  }
+
   type BaseResponsePageChatHistory = {
     code?: number
     data?: PageChatHistory
@@ -116,6 +122,12 @@ declare namespace API {
     isDelete?: number
   }
 
+  type ChatHistoryCursorPageVO = {
+    records?: ChatHistory[]
+    nextCursor?: string
+    hasMore?: boolean
+  }
+
   type ChatHistoryQueryRequest = {
     pageNum?: number
     pageSize?: number
@@ -162,6 +174,12 @@ declare namespace API {
     id: number
   }
 
+  type listAppChatHistoryByCursorParams = {
+    appId: string
+    pageSize?: number
+    cursor?: string
+  }
+
   type listAppChatHistoryParams = {
     appId: string
     pageSize?: number
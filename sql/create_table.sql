@@ -50,6 +50,7 @@ create table chat_history
 (
     id          bigint auto_increment comment 'id' primary key,
     message     text                               not null comment '消息',
+    messageCompressed mediumblob                   null comment '压缩后的消息（编码标记 + 压缩数据），为空时使用 message',
     messageType varchar(32)                        not null comment 'user/ai',
     appId       bigint                             not null comment '应用id',
     userId      bigint                             not null comment '创建用户id',
@@ -60,3 +61,25 @@ create table chat_history
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
     INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
+
+-- 已有库升级：增加压缩消息列，已有的长消息由应用启动后在后台压缩
+-- alter table chat_history
+--     add column messageCompressed mediumblob null comment '压缩后的消息（编码标记 + 压缩数据），为空时使用 message' after message;
+
+-- 对话历史分表（按 appId 哈希，数量与 chat-history-sharding.shard-count 一致），结构和索引与 chat_history 相同
+create table if not exists chat_history_00 like chat_history;
+create table if not exists chat_history_01 like chat_history;
+create table if not exists chat_history_02 like chat_history;
+create table if not exists chat_history_03 like chat_history;
+create table if not exists chat_history_04 like chat_history;
+create table if not exists chat_history_05 like chat_history;
+create table if not exists chat_history_06 like chat_history;
+create table if not exists chat_history_07 like chat_history;
+create table if not exists chat_history_08 like chat_history;
+create table if not exists chat_history_09 like chat_history;
+create table if not exists chat_history_10 like chat_history;
+create table if not exists chat_history_11 like chat_history;
+create table if not exists chat_history_12 like chat_history;
+create table if not exists chat_history_13 like chat_history;
+create table if not exists chat_history_14 like chat_history;
+create table if not exists chat_history_15 like chat_history;
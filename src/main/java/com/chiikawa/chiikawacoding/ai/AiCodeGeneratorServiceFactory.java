@@ -4,22 +4,18 @@ import com.chiikawa.chiikawacoding.ai.tools.FileWriteTool;
 import com.chiikawa.chiikawacoding.exception.BusinessException;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
 import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
-import com.chiikawa.chiikawacoding.service.ChatHistoryService;
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 
 @Configuration
 @Slf4j
@@ -34,121 +30,59 @@ public class AiCodeGeneratorServiceFactory {
     @Resource
     private StreamingChatModel reasoningStreamingChatModel;
 
-
-    @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
-
     @Resource
-    private ChatHistoryService chatHistoryService;
-
-//    @Bean
-//    public AiCodeGeneratorService aiCodeGeneratorService() {
-//        return AiServices.builder(AiCodeGeneratorService.class)
-//                .chatModel(chatModel)
-//                .streamingChatModel(streamingChatModel)
-//                // 根据 id 构建独立的对话记忆
-//                .chatMemoryProvider(memoryId -> MessageWindowChatMemory
-//                        .builder()
-//                        .id(memoryId)
-//                        .chatMemoryStore(redisChatMemoryStore)
-//                        .maxMessages(20)
-//                        .build())
-//                .build();
-//    }
-
+    private AppChatMemoryProvider appChatMemoryProvider;
 
     /**
-     * AI 服务实例缓存
+     * AI 服务实例：每种代码生成类型一个，启动时创建
+     * 应用之间的差异只有对话记忆，由 AppChatMemoryProvider 按 @MemoryId（appId）提供
      */
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
-            })
-            .build();
+    private final Map<CodeGenTypeEnum, AiCodeGeneratorService> services = new EnumMap<>(CodeGenTypeEnum.class);
 
-    /**
-     * 根据 appId 获取服务（带缓存）这个方法是为了兼容历史逻辑
-     */
-    public AiCodeGeneratorService getAiCodeGeneratorService(long appId) {
-        return getAiCodeGeneratorService(appId, CodeGenTypeEnum.MULTI_FILE);
+    @PostConstruct
+    public void initServices() {
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            services.put(codeGenType, createAiCodeGeneratorService(codeGenType));
+        }
     }
 
     /**
-     * 根据 appId 和代码生成类型获取服务（带缓存）
+     * 获取服务（兼容历史逻辑，默认多文件生成）
      */
-    public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        String cacheKey = buildCacheKey(appId, codeGenType);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+    public AiCodeGeneratorService getAiCodeGeneratorService() {
+        return getAiCodeGeneratorService(CodeGenTypeEnum.MULTI_FILE);
     }
 
     /**
-     * 构建缓存键
+     * 根据代码生成类型获取服务
      */
-    private String buildCacheKey(long appId, CodeGenTypeEnum codeGenType) {
-        return appId + "_" + codeGenType.getValue();
+    public AiCodeGeneratorService getAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        AiCodeGeneratorService service = services.get(codeGenType);
+        if (service == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        }
+        return service;
     }
 
-
-
     /**
      * 方法2 默认提供一个 Bean
      */
     @Bean
     public AiCodeGeneratorService aiCodeGeneratorService() {
-        return getAiCodeGeneratorService(0L);
+        return getAiCodeGeneratorService();
     }
 
-
     /**
      * 创建新的 AI 服务实例
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId) {
-        log.info("为 appId: {} 创建新的 AI 服务实例", appId);
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
-        return AiServices.builder(AiCodeGeneratorService.class)
-                .chatModel(chatModel)
-                .streamingChatModel(openAiStreamingChatModel)
-                .chatMemory(chatMemory)
-                .chatMemoryProvider(memoryId -> MessageWindowChatMemory
-                        .builder()
-                        .id(memoryId)
-                        .chatMemoryStore(redisChatMemoryStore)
-                        .maxMessages(20)
-                        .build())
-                .build();
-    }
-
-
-    /**
-     * 创建新的 AI 服务实例
-     */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+    private AiCodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        log.info("为代码生成类型: {} 创建 AI 服务实例", codeGenType.getValue());
         // 根据代码生成类型选择不同的模型配置
         return switch (codeGenType) {
             // Vue 项目生成使用推理模型
             case VUE_PROJECT -> AiServices.builder(AiCodeGeneratorService.class)
                     .streamingChatModel(reasoningStreamingChatModel)
-                    .chatMemoryProvider(memoryId -> chatMemory)
+                    .chatMemoryProvider(appChatMemoryProvider)
                     .tools(new FileWriteTool())
                     .hallucinatedToolNameStrategy(toolExecutionRequest -> ToolExecutionResultMessage.from(
                             toolExecutionRequest, "Error: there is no tool called " + toolExecutionRequest.name()
@@ -158,13 +92,10 @@ public class AiCodeGeneratorServiceFactory {
             case HTML, MULTI_FILE -> AiServices.builder(AiCodeGeneratorService.class)
                     .chatModel(chatModel)
                     .streamingChatModel(openAiStreamingChatModel)
-                    .chatMemory(chatMemory)
-                    .chatMemoryProvider(memoryId -> chatMemory)
+                    .chatMemoryProvider(appChatMemoryProvider)
                     .build();
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR,
                     "不支持的代码生成类型: " + codeGenType.getValue());
         };
     }
-
-
 }
@@ -0,0 +1,210 @@
+package com.chiikawa.chiikawacoding.ai;
+
+import com.chiikawa.chiikawacoding.ai.memory.TokenBudgetChatMemory;
+import com.chiikawa.chiikawacoding.config.ChatMemoryCacheConfig;
+import com.chiikawa.chiikawacoding.config.ChatMemoryWindowConfig;
+import com.chiikawa.chiikawacoding.core.cache.AppCacheInvalidationBus;
+import com.chiikawa.chiikawacoding.model.entity.App;
+import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
+import com.chiikawa.chiikawacoding.service.AppService;
+import com.chiikawa.chiikawacoding.service.ChatHistoryService;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 应用对话记忆提供者
+ * AI 服务按 @MemoryId（appId）获取对话记忆，记忆实例带缓存，Redis 中没有对话记忆时从数据库加载历史对话；
+ * 对话记忆按应用代码生成类型的 token 预算裁剪（见 {@link TokenBudgetChatMemory}）
+ * <p>
+ * 加载在独立线程池中异步进行，同一应用的并发请求等待同一个加载结果，不占用缓存的计算锁；
+ * 访问频繁的应用在过期前后台刷新，不会在请求线程上重新加载；
+ * 应用被删除、对话历史被清空或被修改时由 {@link AppCacheInvalidationBus} 通知所有实例清除
+ */
+@Component
+@Slf4j
+public class AppChatMemoryProvider implements ChatMemoryProvider {
+
+    @Resource
+    private ChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private ChatHistoryService chatHistoryService;
+
+    @Resource
+    private ChatMemoryCacheConfig chatMemoryCacheConfig;
+
+    @Resource
+    private ThreadPoolExecutor chatMemoryLoadExecutor;
+
+    @Resource
+    private AppCacheInvalidationBus appCacheInvalidationBus;
+
+    @Resource
+    private ChatMemoryWindowConfig chatMemoryWindowConfig;
+
+    @Resource
+    private TokenCountEstimator chatMemoryTokenCountEstimator;
+
+    @Resource
+    @Lazy
+    private AppService appService;
+
+    /**
+     * 对话记忆缓存：appId -> 对话记忆
+     */
+    private AsyncLoadingCache<Long, ChatMemory> chatMemoryCache;
+
+    @PostConstruct
+    public void initCache() {
+        chatMemoryCache = Caffeine.newBuilder()
+                .maximumSize(chatMemoryCacheConfig.getMaximumSize())
+                .refreshAfterWrite(chatMemoryCacheConfig.getRefreshAfterWrite())
+                .expireAfterWrite(chatMemoryCacheConfig.getExpireAfterWrite())
+                .expireAfterAccess(chatMemoryCacheConfig.getExpireAfterAccess())
+                .executor(chatMemoryLoadExecutor)
+                .removalListener((key, value, cause) -> {
+                    log.debug("对话记忆被移除，appId: {}, 原因: {}", key, cause);
+                })
+                .buildAsync(new ChatMemoryLoader());
+        appCacheInvalidationBus.addListener(appId -> chatMemoryCache.synchronous().invalidate(appId));
+    }
+
+    @Override
+    public ChatMemory get(Object memoryId) {
+        long appId = ((Number) memoryId).longValue();
+        return chatMemoryCache.get(appId).join();
+    }
+
+    /**
+     * 提前开始加载应用的对话记忆，与后续处理并行
+     * 需在本轮用户消息写入对话历史之后调用（加载时跳过最新一条消息）
+     *
+     * @param appId 应用 ID
+     * @return 加载结果
+     */
+    public CompletableFuture<ChatMemory> prefetch(long appId) {
+        return chatMemoryCache.get(appId);
+    }
+
+    /**
+     * 启动后在加载线程池中预热最近活跃应用的对话记忆，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (chatMemoryCacheConfig.getWarmUpSize() <= 0) {
+            return;
+        }
+        chatMemoryLoadExecutor.execute(() -> {
+            try {
+                List<Long> appIds = chatHistoryService.listRecentlyActiveAppIds(
+                        LocalDateTime.now().minus(chatMemoryCacheConfig.getWarmUpWindow()),
+                        chatMemoryCacheConfig.getWarmUpSize());
+                warmUp(appIds);
+            } catch (Exception e) {
+                log.warn("对话记忆预热失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 批量预热对话记忆：应用信息和对话历史各一次查询，Redis 中已有对话记忆的应用直接复用，不读数据库
+     * 只应在应用没有进行中的生成时调用（加载包含最新一条消息）
+     *
+     * @param appIds 应用 ID
+     */
+    public void warmUp(Collection<Long> appIds) {
+        List<Long> missingAppIds = appIds.stream()
+                .filter(appId -> chatMemoryCache.getIfPresent(appId) == null)
+                .toList();
+        if (missingAppIds.isEmpty()) {
+            return;
+        }
+        Map<Long, App> apps = appService.listByIds(missingAppIds).stream()
+                .collect(Collectors.toMap(App::getId, Function.identity()));
+        Map<Long, TokenBudgetChatMemory> chatMemories = new LinkedHashMap<>();
+        List<Long> coldAppIds = new ArrayList<>();
+        for (Long appId : missingAppIds) {
+            if (!apps.containsKey(appId)) {
+                continue;
+            }
+            chatMemories.put(appId, createChatMemory(appId, apps.get(appId)));
+            if (redisChatMemoryStore.getMessages(appId).isEmpty()) {
+                coldAppIds.add(appId);
+            }
+        }
+        Map<Long, List<ChatMessage>> histories = chatHistoryService.batchLoadChatHistoryMessages(coldAppIds,
+                chatMemoryWindowConfig.getMaxLoadMessages());
+        histories.forEach((appId, history) -> chatMemories.get(appId).setMessages(history));
+        chatMemories.forEach((appId, chatMemory) ->
+                chatMemoryCache.asMap().putIfAbsent(appId, CompletableFuture.completedFuture(chatMemory)));
+        log.info("对话记忆预热完成，应用数: {}, 从数据库加载: {}", chatMemories.size(), histories.size());
+    }
+
+    /**
+     * 创建应用的对话记忆，token 预算取决于应用的代码生成类型
+     */
+    private TokenBudgetChatMemory createChatMemory(Long appId, App app) {
+        CodeGenTypeEnum codeGenType = app == null ? null : CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        int maxTokens = chatMemoryWindowConfig.resolveMaxTokens(codeGenType);
+        log.info("为 appId: {} 创建对话记忆，token 预算: {}", appId, maxTokens);
+        return new TokenBudgetChatMemory(appId, redisChatMemoryStore, maxTokens, chatMemoryTokenCountEstimator);
+    }
+
+    private class ChatMemoryLoader implements CacheLoader<Long, ChatMemory> {
+
+        /**
+         * 创建应用的对话记忆，Redis 中已有对话记忆时直接复用，否则从数据库加载历史对话
+         * 本地缓存过期或被清除后重新加载不会覆盖 Redis 中的压缩摘要和工具调用消息（数据库中没有这些内容）
+         */
+        @Override
+        public ChatMemory load(Long appId) {
+            TokenBudgetChatMemory chatMemory = createChatMemory(appId, appService.getById(appId));
+            if (!redisChatMemoryStore.getMessages(appId).isEmpty()) {
+                return chatMemory;
+            }
+            List<ChatMessage> history = chatHistoryService.loadChatHistoryMessages(appId,
+                    chatMemoryWindowConfig.getMaxLoadMessages(), true);
+            if (!history.isEmpty()) {
+                chatMemory.setMessages(history);
+            }
+            return chatMemory;
+        }
+
+        /**
+         * 后台刷新：Redis 中的对话记忆仍然存在时继续使用，否则移除，下次访问时重新从数据库加载
+         * （从数据库加载会跳过最新一条消息，只适合在用户消息刚写入时进行）
+         */
+        @Override
+        public ChatMemory reload(Long appId, ChatMemory oldValue) {
+            if (redisChatMemoryStore.getMessages(appId).isEmpty()) {
+                log.info("Redis 对话记忆已过期，等待下次访问重新加载，appId: {}", appId);
+                return null;
+            }
+            return oldValue;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.chiikawa.chiikawacoding.ai.listener;
+
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.output.TokenUsage;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 提示词 token 数日志
+ * 请求发出时记录估算的提示词 token 数，响应结束时记录模型返回的实际输入 token 数，用于观察对话记忆裁剪的效果
+ */
+@Component
+@Slf4j
+public class PromptTokenLogListener implements ChatModelListener {
+
+    private static final String ESTIMATED_TOKENS_ATTRIBUTE = "estimatedPromptTokens";
+
+    @Resource
+    private TokenCountEstimator chatMemoryTokenCountEstimator;
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        int estimatedTokens = chatMemoryTokenCountEstimator
+                .estimateTokenCountInMessages(requestContext.chatRequest().messages());
+        requestContext.attributes().put(ESTIMATED_TOKENS_ATTRIBUTE, estimatedTokens);
+        log.info("大模型请求，消息数: {}, 估算提示词 token 数: {}",
+                requestContext.chatRequest().messages().size(), estimatedTokens);
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        TokenUsage tokenUsage = responseContext.chatResponse().tokenUsage();
+        if (tokenUsage == null) {
+            return;
+        }
+        log.info("大模型响应，估算提示词 token 数: {}, 实际输入 token 数: {}, 输出 token 数: {}",
+                responseContext.attributes().get(ESTIMATED_TOKENS_ATTRIBUTE),
+                tokenUsage.inputTokenCount(), tokenUsage.outputTokenCount());
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        // 错误由调用方记录
+    }
+}
@@ -0,0 +1,176 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import com.chiikawa.chiikawacoding.config.ChatMemoryCompactionConfig;
+import com.chiikawa.chiikawacoding.core.GenerationLeaseManager;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.ChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 对话记忆压缩
+ * 生成结束后检查应用的对话记忆，超过阈值时在后台线程池中用对话模型按 summary-old-chat-memory 提示词
+ * 把较早的轮次总结为一轮对话（用户需求 + 系统响应，保留最近一次生成的代码），替换存储中的原始轮次
+ * <p>
+ * 压缩不阻塞生成：总结期间不持有任何锁，按读取时的版本号比较后写回，期间有任何写入（任一实例上的生成、清空）时放弃本次压缩，
+ * 不会覆盖新追加的轮次
+ */
+@Component
+@Slf4j
+public class ChatMemoryCompactor {
+
+    private static final String SUMMARY_PROMPT_RESOURCE = "prompt/summary-old-chat-memory.txt";
+
+    @Resource
+    private VersionedChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private ChatModel chatModel;
+
+    @Resource
+    private TokenCountEstimator chatMemoryTokenCountEstimator;
+
+    @Resource
+    private GenerationLeaseManager generationLeaseManager;
+
+    @Resource
+    private ChatMemoryCompactionConfig chatMemoryCompactionConfig;
+
+    @Resource
+    private ThreadPoolExecutor chatMemoryCompactionExecutor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 正在压缩的应用，同一应用不重复提交
+     */
+    private final Set<Long> compactingApps = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 检查并在后台压缩应用的对话记忆
+     *
+     * @param appId 应用 ID
+     */
+    public void requestCompaction(long appId) {
+        if (!chatMemoryCompactionConfig.isEnabled() || !compactingApps.add(appId)) {
+            return;
+        }
+        try {
+            chatMemoryCompactionExecutor.execute(() -> {
+                try {
+                    compact(appId);
+                } catch (Exception e) {
+                    record("failed");
+                    log.error("对话记忆压缩失败，appId: {}", appId, e);
+                } finally {
+                    compactingApps.remove(appId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，下次生成结束后再试
+            compactingApps.remove(appId);
+        }
+    }
+
+    private void compact(long appId) {
+        RedisListChatMemoryStore.VersionedMessages snapshot = redisChatMemoryStore.read(appId);
+        List<ChatMessage> messages = snapshot.getMessages();
+        int tokens = chatMemoryTokenCountEstimator.estimateTokenCountInMessages(messages.stream()
+                .filter(message -> !(message instanceof SystemMessage))
+                .toList());
+        if (tokens <= chatMemoryCompactionConfig.getTriggerTokens()) {
+            return;
+        }
+        // 被总结的是最近若干轮之前的所有轮次
+        int[] turns = TokenBudgetChatMemory.assignTurns(messages);
+        int firstKeptTurn = TokenBudgetChatMemory.lastTurn(turns) - chatMemoryCompactionConfig.getKeepRecentTurns() + 1;
+        List<ChatMessage> oldMessages = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            if (turns[i] >= 0 && turns[i] < firstKeptTurn) {
+                oldMessages.add(messages.get(i));
+            }
+        }
+        if (oldMessages.size() <= 2) {
+            // 只有一轮（上一次的总结）时没有可压缩的内容
+            record("skipped");
+            return;
+        }
+        List<ChatMessage> summary = summarize(oldMessages);
+        if (summary.isEmpty()) {
+            record("failed");
+            log.warn("对话记忆总结结果无法解析，放弃压缩，appId: {}", appId);
+            return;
+        }
+        // 本实例上正在生成时直接放弃；其他实例上的写入由按版本号比较后写入发现
+        if (generationLeaseManager.isGenerating(appId)) {
+            record("skipped");
+            return;
+        }
+        List<ChatMessage> turnMessages = messages.stream()
+                .filter(message -> !(message instanceof SystemMessage))
+                .toList();
+        List<ChatMessage> compacted = new ArrayList<>();
+        messages.stream().filter(SystemMessage.class::isInstance).forEach(compacted::add);
+        compacted.addAll(summary);
+        compacted.addAll(turnMessages.subList(oldMessages.size(), turnMessages.size()));
+        if (redisChatMemoryStore.updateMessagesIfVersion(appId, compacted, snapshot.getVersion()) == 0L) {
+            // 总结期间对话记忆已变化（新一轮对话、清空），下次生成结束后再试
+            record("skipped");
+            log.info("对话记忆已变化，放弃本次压缩，appId: {}", appId);
+            return;
+        }
+        record("compacted");
+        log.info("对话记忆压缩完成，appId: {}, 消息数: {} -> {}, 估算 token 数: {} -> {}", appId,
+                messages.size(), compacted.size(), tokens,
+                chatMemoryTokenCountEstimator.estimateTokenCountInMessages(compacted));
+    }
+
+    /**
+     * 调用对话模型总结旧轮次，输出为提示词约定的消息 JSON 数组
+     * 只接受普通的用户消息和不带工具调用的 AI 消息，且须以用户消息开头（与对话记忆按轮次裁剪一致）
+     */
+    private List<ChatMessage> summarize(List<ChatMessage> oldMessages) {
+        String response = chatModel.chat(
+                SystemMessage.from(ResourceUtil.readUtf8Str(SUMMARY_PROMPT_RESOURCE)),
+                UserMessage.from(ChatMessageSerializer.messagesToJson(oldMessages))
+        ).aiMessage().text();
+        // 模型可能用代码块包裹输出，只取最外层的 JSON 数组
+        int start = StrUtil.nullToEmpty(response).indexOf('[');
+        int end = StrUtil.nullToEmpty(response).lastIndexOf(']');
+        if (start < 0 || end <= start) {
+            return List.of();
+        }
+        List<ChatMessage> summary;
+        try {
+            summary = ChatMessageDeserializer.messagesFromJson(response.substring(start, end + 1));
+        } catch (Exception e) {
+            return List.of();
+        }
+        boolean valid = summary != null && !summary.isEmpty() && summary.getFirst() instanceof UserMessage
+                && summary.stream().allMatch(message -> message instanceof UserMessage
+                || (message instanceof AiMessage aiMessage && !aiMessage.hasToolExecutionRequests()));
+        return valid ? summary : List.of();
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("chat.memory.compaction", "result", result).increment();
+    }
+}
@@ -0,0 +1,103 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对话记忆窗口的增量更新计划（按消息摘要比对）
+ * 新窗口 = 已存消息的开头 keep 条 + 删掉其后 drop 条后剩余的已存消息（截断到新窗口长度，个别位置替换）+ 追加的消息
+ * <p>
+ * 覆盖记忆窗口的常见变化：追加新一轮对话、从头部或固定的系统消息之后淘汰整轮对话、裁剪改写较早的 AI 消息；
+ * 在所有可能的 drop 中选写入消息数最少的方案，写入量不少于全量重写时改为全量重写
+ */
+@Getter
+public class ChatMemoryListDiff {
+
+    /**
+     * 是否全量重写（删除后写入全部消息）
+     */
+    private final boolean fullRewrite;
+
+    /**
+     * 保留的开头消息数（与新窗口的公共前缀）
+     */
+    private final int keep;
+
+    /**
+     * 保留的开头之后删除的消息数
+     */
+    private final int drop;
+
+    /**
+     * 需要替换的位置（新窗口中的下标）
+     */
+    private final List<Integer> replacedIndexes;
+
+    /**
+     * 从新窗口的该下标开始追加
+     */
+    private final int appendFrom;
+
+    /**
+     * 写入的消息数，删除时重新写回保留的开头也计算在内
+     */
+    private final int writeCount;
+
+    private ChatMemoryListDiff(boolean fullRewrite, int keep, int drop, List<Integer> replacedIndexes,
+                               int appendFrom, int writeCount) {
+        this.fullRewrite = fullRewrite;
+        this.keep = keep;
+        this.drop = drop;
+        this.replacedIndexes = replacedIndexes;
+        this.appendFrom = appendFrom;
+        this.writeCount = writeCount;
+    }
+
+    /**
+     * 全量重写
+     *
+     * @param targetSize 新窗口的消息数
+     */
+    public static ChatMemoryListDiff fullRewrite(int targetSize) {
+        return new ChatMemoryListDiff(true, 0, 0, List.of(), 0, targetSize);
+    }
+
+    /**
+     * 计算更新计划
+     *
+     * @param stored 已存消息的摘要
+     * @param target 新窗口消息的摘要
+     * @return 写入消息数最少的更新计划
+     */
+    public static ChatMemoryListDiff plan(List<String> stored, List<String> target) {
+        int storedSize = stored.size();
+        int targetSize = target.size();
+        int prefix = 0;
+        while (prefix < storedSize && prefix < targetSize && stored.get(prefix).equals(target.get(prefix))) {
+            prefix++;
+        }
+        ChatMemoryListDiff best = fullRewrite(targetSize);
+        for (int drop = 0; drop <= storedSize - prefix; drop++) {
+            int overlap = Math.min(storedSize - drop, targetSize);
+            // 删除中间的消息需要把保留的开头重新写回
+            int writeCount = drop > 0 ? prefix : 0;
+            List<Integer> replacedIndexes = new ArrayList<>();
+            for (int i = prefix; i < overlap && writeCount < best.writeCount; i++) {
+                if (!stored.get(i + drop).equals(target.get(i))) {
+                    replacedIndexes.add(i);
+                    writeCount++;
+                }
+            }
+            writeCount += targetSize - overlap;
+            if (writeCount < best.writeCount) {
+                best = new ChatMemoryListDiff(false, prefix, drop, replacedIndexes, overlap, writeCount);
+                if (writeCount == targetSize - overlap && drop == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,80 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+/**
+ * 本地 token 数估算
+ * 不加载分词器，按字符类别粗略估算：ASCII 字符（代码、英文）约 4 个一个 token，
+ * 其他字符（中文等）一个字符一个 token，每条消息另加固定开销
+ * <p>
+ * 只用于对话记忆按 token 预算裁剪，估算偏差由预算留出的余量吸收
+ */
+public class LocalTokenCountEstimator implements TokenCountEstimator {
+
+    /**
+     * 每条消息的固定开销（角色、分隔符）
+     */
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    private static final int ASCII_CHARS_PER_TOKEN = 4;
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int asciiChars = 0;
+        int otherChars = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                asciiChars++;
+            } else if (!Character.isLowSurrogate(c)) {
+                otherChars++;
+            }
+        }
+        return (asciiChars + ASCII_CHARS_PER_TOKEN - 1) / ASCII_CHARS_PER_TOKEN + otherChars;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        int tokens = TOKENS_PER_MESSAGE;
+        if (message instanceof UserMessage userMessage) {
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    tokens += estimateTokenCountInText(textContent.text());
+                }
+            }
+        } else if (message instanceof AiMessage aiMessage) {
+            tokens += estimateTokenCountInText(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    tokens += estimateTokenCountInText(request.name());
+                    tokens += estimateTokenCountInText(request.arguments());
+                }
+            }
+        } else if (message instanceof SystemMessage systemMessage) {
+            tokens += estimateTokenCountInText(systemMessage.text());
+        } else if (message instanceof ToolExecutionResultMessage toolResult) {
+            tokens += estimateTokenCountInText(toolResult.text());
+        }
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,305 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 Redis 列表的对话记忆存储
+ * 每条消息单独作为列表元素保存，更新时只写入变化的消息（追加新消息、删除淘汰的消息、替换被裁剪的消息），
+ * 写入量与变化的消息大小成正比，而不是每次重写整个窗口（AI 消息包含完整的生成文件，窗口可达数百 KB）
+ * <p>
+ * 另用一个摘要列表记录每条消息的摘要，更新时只读取摘要列表与新窗口比对，得到更新计划（见 {@link ChatMemoryListDiff}）；
+ * 兼容旧的 RedisChatMemoryStore 数据：新键不存在时读取旧键（整个窗口的 JSON），转存为列表后删除旧键
+ * <p>
+ * 每次写入生成递增的版本号，供本地缓存判断是否过期（见 {@link TieredChatMemoryStore}）；
+ * 写入脚本先比对读取摘要时的版本号，期间被其他实例改写过的不执行增量计划，改为全量重写
+ */
+@Slf4j
+public class RedisListChatMemoryStore implements VersionedChatMemoryStore {
+
+    private static final String KEY_PREFIX = "chat_memory:";
+
+    private static final String HASH_KEY_SUFFIX = ":hash";
+
+    private static final String VERSION_KEY_SUFFIX = ":version";
+
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        APPEND_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/chat_memory_append.lua")));
+        APPEND_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 单条消息编码前缀：纯文本的用户、AI、系统消息只保存文本，其他消息保存完整 JSON
+     */
+    private static final char USER = 'U';
+
+    private static final char AI = 'A';
+
+    private static final char SYSTEM = 'S';
+
+    private static final char JSON = 'J';
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 过期时间（秒），每次写入后刷新，小于等于 0 表示不过期
+     */
+    private final long ttl;
+
+    /**
+     * 反序列化耗时
+     */
+    private final Timer deserializeTimer;
+
+    public RedisListChatMemoryStore(StringRedisTemplate stringRedisTemplate, long ttl, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttl = ttl;
+        this.deserializeTimer = Timer.builder("chat.memory.deserialize")
+                .description("对话记忆反序列化耗时")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        return read(memoryId).getMessages();
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        write(memoryId, messages);
+    }
+
+    /**
+     * 读取消息和版本号
+     * 先读版本号再读消息，期间有写入时读到的版本号偏旧，本地缓存会被该次写入的通知清除
+     *
+     * @param memoryId 记忆 ID
+     * @return 消息和版本号，不存在时消息为空、版本号为 0
+     */
+    @Override
+    public VersionedMessages read(Object memoryId) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(versionKey(memoryId).getBytes(StandardCharsets.UTF_8));
+            connection.listCommands().lRange(messagesKey(memoryId).getBytes(StandardCharsets.UTF_8), 0, -1);
+            return null;
+        });
+        long version = results.get(0) == null ? 0L : Long.parseLong((String) results.get(0));
+        @SuppressWarnings("unchecked")
+        List<String> encodedMessages = (List<String>) results.get(1);
+        if (CollUtil.isEmpty(encodedMessages)) {
+            return migrateLegacyMessages(memoryId, version);
+        }
+        List<ChatMessage> messages = deserializeTimer.record(
+                () -> new ArrayList<>(encodedMessages.stream().map(this::decode).toList()));
+        return new VersionedMessages(version, messages);
+    }
+
+    /**
+     * 写入消息
+     *
+     * @param memoryId 记忆 ID
+     * @param messages 当前窗口的全部消息
+     * @return 写入后的版本号，消息为空时删除
+     */
+    public long write(Object memoryId, List<ChatMessage> messages) {
+        if (CollUtil.isEmpty(messages)) {
+            return delete(memoryId);
+        }
+        List<String> encodedMessages = messages.stream().map(this::encode).toList();
+        List<String> hashes = encodedMessages.stream().map(this::hash).toList();
+        long version = tryWrite(memoryId, encodedMessages, hashes, -1L);
+        if (version == 0L) {
+            // 读取摘要后被并发修改，全量重写
+            log.warn("对话记忆被并发修改，全量重写，memoryId: {}", memoryId);
+            version = apply(memoryId, -1L, ChatMemoryListDiff.fullRewrite(hashes.size()), encodedMessages, hashes);
+        }
+        return version;
+    }
+
+    @Override
+    public long updateMessagesIfVersion(Object memoryId, List<ChatMessage> messages, long expectedVersion) {
+        if (CollUtil.isEmpty(messages)) {
+            throw new IllegalArgumentException("messages must not be empty");
+        }
+        List<String> encodedMessages = messages.stream().map(this::encode).toList();
+        return tryWrite(memoryId, encodedMessages, encodedMessages.stream().map(this::hash).toList(), expectedVersion);
+    }
+
+    /**
+     * 按摘要比对得到更新计划并执行
+     *
+     * @param requiredVersion 要求的当前版本号，-1 表示不要求
+     * @return 写入后的版本号，读取摘要后被并发修改或版本号不是要求的版本时返回 0
+     */
+    private long tryWrite(Object memoryId, List<String> encodedMessages, List<String> hashes, long requiredVersion) {
+        // 版本号和摘要在同一次往返中读取，脚本据此确认更新计划基于的仍是当前内容
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(versionKey(memoryId).getBytes(StandardCharsets.UTF_8));
+            connection.listCommands().lRange(hashesKey(memoryId).getBytes(StandardCharsets.UTF_8), 0, -1);
+            return null;
+        });
+        long storedVersion = results.get(0) == null ? 0L : Long.parseLong((String) results.get(0));
+        @SuppressWarnings("unchecked")
+        List<String> storedHashes = results.get(1) == null ? List.of() : (List<String>) results.get(1);
+        if (requiredVersion >= 0 && storedVersion != requiredVersion) {
+            return 0L;
+        }
+        ChatMemoryListDiff diff = ChatMemoryListDiff.plan(storedHashes, hashes);
+        return apply(memoryId, storedVersion, diff, encodedMessages, hashes);
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        delete(memoryId);
+    }
+
+    /**
+     * 删除消息，删除也递增版本号，本地缓存据此丢弃删除前读到的旧数据
+     *
+     * @param memoryId 记忆 ID
+     * @return 删除后的版本号
+     */
+    public long delete(Object memoryId) {
+        long version = apply(memoryId, -1L, ChatMemoryListDiff.fullRewrite(0), List.of(), List.of());
+        stringRedisTemplate.delete(legacyKey(memoryId));
+        return version;
+    }
+
+    /**
+     * 执行更新计划
+     *
+     * @param expectedVersion 更新计划基于的版本号，-1 表示不检查（全量重写）
+     * @return 写入后的版本号，版本号与预期不一致时返回 0
+     */
+    private long apply(Object memoryId, long expectedVersion, ChatMemoryListDiff diff,
+                       List<String> encodedMessages, List<String> hashes) {
+        List<Integer> replacedIndexes = diff.getReplacedIndexes();
+        int appendFrom = diff.getAppendFrom();
+        int appendCount = encodedMessages.size() - appendFrom;
+        List<String> args = new ArrayList<>(7 + replacedIndexes.size() * 3 + appendCount * 2);
+        args.add(String.valueOf(expectedVersion));
+        args.add(String.valueOf(diff.isFullRewrite() ? -1 : diff.getKeep()));
+        args.add(String.valueOf(diff.getDrop()));
+        args.add(String.valueOf(encodedMessages.size()));
+        args.add(String.valueOf(Math.max(ttl, 0)));
+        args.add(String.valueOf(replacedIndexes.size()));
+        args.add(String.valueOf(appendCount));
+        for (int index : replacedIndexes) {
+            args.add(String.valueOf(index));
+            args.add(encodedMessages.get(index));
+            args.add(hashes.get(index));
+        }
+        args.addAll(encodedMessages.subList(appendFrom, encodedMessages.size()));
+        args.addAll(hashes.subList(appendFrom, hashes.size()));
+        Long version = stringRedisTemplate.execute(APPEND_SCRIPT,
+                List.of(messagesKey(memoryId), hashesKey(memoryId), versionKey(memoryId)), args.toArray());
+        return version == null ? 0L : version;
+    }
+
+    /**
+     * 迁移旧的 RedisChatMemoryStore 数据（键为 memoryId，值为整个窗口的 JSON）
+     */
+    private VersionedMessages migrateLegacyMessages(Object memoryId, long version) {
+        String legacyKey = legacyKey(memoryId);
+        String json = stringRedisTemplate.opsForValue().get(legacyKey);
+        if (json == null) {
+            return new VersionedMessages(version, new ArrayList<>());
+        }
+        List<ChatMessage> messages = deserializeTimer.record(() -> ChatMessageDeserializer.messagesFromJson(json));
+        long migratedVersion = messages.isEmpty() ? version : write(memoryId, messages);
+        stringRedisTemplate.delete(legacyKey);
+        log.info("迁移旧格式对话记忆，memoryId: {}, 消息数: {}", memoryId, messages.size());
+        return new VersionedMessages(migratedVersion, new ArrayList<>(messages));
+    }
+
+    private String encode(ChatMessage message) {
+        if (message instanceof UserMessage userMessage && userMessage.hasSingleText() && userMessage.name() == null) {
+            return USER + userMessage.singleText();
+        }
+        if (message instanceof AiMessage aiMessage && !aiMessage.hasToolExecutionRequests() && aiMessage.text() != null) {
+            return AI + aiMessage.text();
+        }
+        if (message instanceof SystemMessage systemMessage) {
+            return SYSTEM + systemMessage.text();
+        }
+        return JSON + ChatMessageSerializer.messageToJson(message);
+    }
+
+    private ChatMessage decode(String encoded) {
+        String body = encoded.substring(1);
+        return switch (encoded.charAt(0)) {
+            case USER -> UserMessage.from(body);
+            case AI -> AiMessage.from(body);
+            case SYSTEM -> SystemMessage.from(body);
+            case JSON -> ChatMessageDeserializer.messageFromJson(body);
+            default -> throw new IllegalStateException("无法解析的对话记忆消息编码: " + encoded.charAt(0));
+        };
+    }
+
+    /**
+     * 消息摘要：摘要相同的消息不会重新写入，必须使用抗碰撞的摘要，否则会留下过期的内容
+     * 旧格式的摘要与之不同，升级后每个记忆第一次写入时全量重写一次
+     */
+    private String hash(String encoded) {
+        return DigestUtil.sha256Hex(encoded);
+    }
+
+    /**
+     * 消息列表和摘要列表使用相同的哈希标签，集群模式下位于同一个槽，可以在脚本中同时修改
+     */
+    private String messagesKey(Object memoryId) {
+        return KEY_PREFIX + "{" + memoryId + "}";
+    }
+
+    private String hashesKey(Object memoryId) {
+        return messagesKey(memoryId) + HASH_KEY_SUFFIX;
+    }
+
+    private String versionKey(Object memoryId) {
+        return messagesKey(memoryId) + VERSION_KEY_SUFFIX;
+    }
+
+    /**
+     * 旧的 RedisChatMemoryStore 键（默认无前缀）
+     */
+    private String legacyKey(Object memoryId) {
+        return memoryId.toString();
+    }
+
+    /**
+     * 带版本号的消息
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class VersionedMessages {
+
+        /**
+         * 版本号，每次写入递增，不存在时为 0
+         */
+        private final long version;
+
+        private final List<ChatMessage> messages;
+    }
+}
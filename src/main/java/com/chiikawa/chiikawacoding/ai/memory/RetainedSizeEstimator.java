@@ -0,0 +1,89 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.List;
+
+/**
+ * 对话消息的堆占用估算（字节）
+ * 按对象头、引用和字符串内容粗略估算，字符串按紧凑字符串计算（Latin-1 每字符 1 字节，否则 2 字节），
+ * 工具调用的参数和结果一并计入；用于本地缓存按堆占用淘汰，不追求精确
+ */
+public class RetainedSizeEstimator {
+
+    /**
+     * 缓存条目本身的开销（条目、键、版本号、列表）
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * 每条消息对象及其内容列表的开销
+     */
+    private static final int MESSAGE_OVERHEAD = 64;
+
+    /**
+     * 每个字符串对象（String + byte[] 头）的开销
+     */
+    private static final int STRING_OVERHEAD = 40;
+
+    private RetainedSizeEstimator() {
+    }
+
+    /**
+     * 估算一组消息的堆占用
+     *
+     * @param messages 消息，可以为 null
+     * @return 估算的字节数
+     */
+    public static long estimate(List<ChatMessage> messages) {
+        long size = ENTRY_OVERHEAD;
+        if (messages == null) {
+            return size;
+        }
+        for (ChatMessage message : messages) {
+            size += estimate(message);
+        }
+        return size;
+    }
+
+    private static long estimate(ChatMessage message) {
+        long size = MESSAGE_OVERHEAD;
+        if (message instanceof UserMessage userMessage) {
+            size += sizeOf(userMessage.name());
+            for (Content content : userMessage.contents()) {
+                size += content instanceof TextContent textContent ? sizeOf(textContent.text()) : MESSAGE_OVERHEAD;
+            }
+        } else if (message instanceof AiMessage aiMessage) {
+            size += sizeOf(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    size += MESSAGE_OVERHEAD + sizeOf(request.id()) + sizeOf(request.name()) + sizeOf(request.arguments());
+                }
+            }
+        } else if (message instanceof SystemMessage systemMessage) {
+            size += sizeOf(systemMessage.text());
+        } else if (message instanceof ToolExecutionResultMessage toolResult) {
+            size += sizeOf(toolResult.id()) + sizeOf(toolResult.toolName()) + sizeOf(toolResult.text());
+        }
+        return size;
+    }
+
+    private static long sizeOf(String text) {
+        if (text == null) {
+            return 0;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) {
+                return STRING_OVERHEAD + 2L * text.length();
+            }
+        }
+        return STRING_OVERHEAD + text.length();
+    }
+}
@@ -0,0 +1,178 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlock;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlockExtractor;
+import com.chiikawa.chiikawacoding.core.saver.MultiFileCodeFileSaverTemplate;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 对话记忆中被覆盖的旧版本文件裁剪
+ * 每轮修改都会重新输出完整文件，旧版本留在对话记忆中只会占用提示词；
+ * 从最新的消息往前扫描，每个文件只保留最新一份，更早的完整内容替换为「路径 + 内容摘要」的简短引用
+ * <p>
+ * 文件通过以下方式识别：
+ * <ul>
+ *     <li>工具调用写文件的参数（Vue 工程模式的实时对话记忆）</li>
+ *     <li>对话历史中「[工具调用] 写入文件 路径」下方的代码块（Vue 工程模式从数据库加载的对话记忆）</li>
+ *     <li>html / css / js 代码块，对应 index.html / style.css / script.js（原生 HTML、多文件模式）</li>
+ * </ul>
+ * 裁剪结果不含围栏代码块，重复执行结果不变
+ */
+public class SupersededCodePruner {
+
+    private static final String WRITE_FILE_TOOL = "writeFile";
+
+    private static final String WRITE_FILE_PREFIX = "[工具调用] 写入文件 ";
+
+    private static final String REFERENCE_PREFIX = "[旧版本已省略] ";
+
+    private static final String CLOSING_FENCE = "```";
+
+    private static final int HASH_LENGTH = 12;
+
+    private static final MultiFileCodeFileSaverTemplate FILE_NAME_RESOLVER = new MultiFileCodeFileSaverTemplate();
+
+    private SupersededCodePruner() {
+    }
+
+    /**
+     * 裁剪旧版本文件
+     *
+     * @param messages 对话记忆（按时间正序）
+     * @return 裁剪后的对话记忆，没有需要裁剪的内容时返回原列表
+     */
+    public static List<ChatMessage> prune(List<ChatMessage> messages) {
+        Set<String> seenFiles = new HashSet<>();
+        List<ChatMessage> pruned = null;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (!(messages.get(i) instanceof AiMessage aiMessage)) {
+                continue;
+            }
+            AiMessage prunedMessage = pruneMessage(aiMessage, seenFiles);
+            if (prunedMessage != aiMessage) {
+                if (pruned == null) {
+                    pruned = new ArrayList<>(messages);
+                }
+                pruned.set(i, prunedMessage);
+            }
+        }
+        return pruned == null ? messages : pruned;
+    }
+
+    /**
+     * 裁剪一条 AI 消息，消息内从后往前处理（工具调用在文本之后）
+     */
+    private static AiMessage pruneMessage(AiMessage message, Set<String> seenFiles) {
+        boolean changed = false;
+        List<ToolExecutionRequest> requests = message.toolExecutionRequests();
+        if (message.hasToolExecutionRequests()) {
+            requests = new ArrayList<>(requests);
+            for (int i = requests.size() - 1; i >= 0; i--) {
+                ToolExecutionRequest request = pruneToolRequest(requests.get(i), seenFiles);
+                if (request != requests.get(i)) {
+                    requests.set(i, request);
+                    changed = true;
+                }
+            }
+        }
+        String text = message.text() == null ? null : pruneText(message.text(), seenFiles);
+        if (text != null && !text.equals(message.text())) {
+            changed = true;
+        }
+        if (!changed) {
+            return message;
+        }
+        if (requests.isEmpty()) {
+            return AiMessage.from(text);
+        }
+        return text == null ? AiMessage.from(requests) : AiMessage.from(text, requests);
+    }
+
+    private static ToolExecutionRequest pruneToolRequest(ToolExecutionRequest request, Set<String> seenFiles) {
+        if (!WRITE_FILE_TOOL.equals(request.name()) || !JSONUtil.isTypeJSONObject(request.arguments())) {
+            return request;
+        }
+        JSONObject arguments = JSONUtil.parseObj(request.arguments());
+        String path = arguments.getStr("relativeFilePath");
+        String content = arguments.getStr("content");
+        if (path == null || content == null || seenFiles.add(path) || content.startsWith(REFERENCE_PREFIX)) {
+            return request;
+        }
+        arguments.set("content", reference(path, content));
+        return ToolExecutionRequest.builder()
+                .id(request.id())
+                .name(request.name())
+                .arguments(arguments.toString())
+                .build();
+    }
+
+    /**
+     * 裁剪文本中的代码块，从最后一个代码块往前处理
+     */
+    private static String pruneText(String text, Set<String> seenFiles) {
+        List<CodeBlock> codeBlocks = CodeBlockExtractor.extract(text);
+        if (codeBlocks.isEmpty()) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text);
+        for (int i = codeBlocks.size() - 1; i >= 0; i--) {
+            CodeBlock codeBlock = codeBlocks.get(i);
+            int fenceStart = lineStart(text, codeBlock.getStartOffset() - 1);
+            String path = resolvePath(text, fenceStart, codeBlock.getLanguage());
+            if (path == null || seenFiles.add(path)) {
+                continue;
+            }
+            int blockEnd = blockEnd(text, codeBlock.getEndOffset());
+            result.replace(fenceStart, blockEnd, reference(path, codeBlock.getCode()) + "\n");
+        }
+        return result.toString();
+    }
+
+    /**
+     * 代码块对应的文件：紧挨在开始围栏之前的「[工具调用] 写入文件」行，否则按语言对应原生模式的文件名
+     */
+    private static String resolvePath(String text, int fenceStart, String language) {
+        if (fenceStart > 0) {
+            String previousLine = text.substring(lineStart(text, fenceStart - 1), fenceStart).trim();
+            if (previousLine.startsWith(WRITE_FILE_PREFIX)) {
+                return previousLine.substring(WRITE_FILE_PREFIX.length()).trim();
+            }
+        }
+        return FILE_NAME_RESOLVER.resolveFileName(language);
+    }
+
+    private static String reference(String path, String content) {
+        String hash = DigestUtil.sha256Hex(content).substring(0, HASH_LENGTH);
+        return String.format("%s%s（内容摘要 %s，以后续消息中的最新版本为准）", REFERENCE_PREFIX, path, hash);
+    }
+
+    /**
+     * position 所在行（position 指向行尾换行符时为该行）的起始偏移量
+     */
+    private static int lineStart(String text, int position) {
+        return text.lastIndexOf('\n', position - 1) + 1;
+    }
+
+    /**
+     * 代码块（含结束围栏行）的结束偏移量
+     * 漏写结束围栏直接开始下一个代码块时，下一个代码块的开始围栏不属于当前代码块
+     */
+    private static int blockEnd(String text, int codeEnd) {
+        if (codeEnd >= text.length()) {
+            return text.length();
+        }
+        int newline = text.indexOf('\n', codeEnd);
+        int lineEnd = newline < 0 ? text.length() : newline + 1;
+        return CLOSING_FENCE.equals(text.substring(codeEnd, lineEnd).trim()) ? lineEnd : codeEnd;
+    }
+}
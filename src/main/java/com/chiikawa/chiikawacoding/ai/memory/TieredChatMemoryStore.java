@@ -0,0 +1,214 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.NumberUtil;
+import com.chiikawa.chiikawacoding.config.ChatMemoryNearCacheConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import dev.langchain4j.data.message.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 两级对话记忆存储：本地 Caffeine 近缓存（L1）+ Redis（L2）
+ * 写入时同步写 Redis 并更新本地缓存，再通过 Redis 发布订阅把新版本号通知其他实例，
+ * 其他实例只清除版本号更旧的本地缓存，乱序到达的旧通知不会清掉较新的缓存
+ * <p>
+ * 收到通知时本地还没有缓存的，记录一个只有版本号的占位，之后只接受不低于该版本的读取结果，
+ * 避免通知先于读取到达时把读到的旧数据放进缓存；删除同样递增版本号，本地缓存为空消息的墓碑，
+ * 删除前开始的读取不会把已删除的消息重新放进缓存
+ * <p>
+ * 本地缓存按估算的堆占用（消息和工具调用内容，见 {@link RetainedSizeEstimator}）淘汰，预算可配置
+ * <p>
+ * L1 命中率以 cache.*（name=chatMemoryL1）导出，L2 命中以 chat.memory.l2 导出；
+ * 按原因（SIZE、EXPIRED）统计的淘汰次数为 chat.memory.l1.removals，当前估算占用和预算为 chat.memory.l1.weight / budget
+ */
+@Slf4j
+public class TieredChatMemoryStore implements VersionedChatMemoryStore {
+
+    private static final String CHANNEL = "chat_memory:invalidate";
+
+    private final RedisListChatMemoryStore redisStore;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 本地缓存：记忆 ID -> 带版本号的消息，以字符串为键，与通知中的记忆 ID 一致
+     */
+    private final Cache<String, CachedMessages> localCache;
+
+    /**
+     * 当前实例 ID，用于忽略自己发出的通知（本地已更新）
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    private final Counter l2HitCounter;
+
+    private final Counter l2MissCounter;
+
+    public TieredChatMemoryStore(RedisListChatMemoryStore redisStore,
+                                 StringRedisTemplate stringRedisTemplate,
+                                 RedisMessageListenerContainer redisMessageListenerContainer,
+                                 ChatMemoryNearCacheConfig chatMemoryNearCacheConfig,
+                                 long ttl,
+                                 MeterRegistry meterRegistry) {
+        this.redisStore = redisStore;
+        this.stringRedisTemplate = stringRedisTemplate;
+        Caffeine<String, CachedMessages> builder = Caffeine.newBuilder()
+                .maximumWeight(chatMemoryNearCacheConfig.getHeapBudget().toBytes())
+                .weigher((String key, CachedMessages cached) -> cached.weight())
+                .expireAfterAccess(chatMemoryNearCacheConfig.getExpireAfterAccess())
+                .removalListener((String key, CachedMessages cached, RemovalCause cause) -> {
+                    // 只统计淘汰（超出预算、过期），版本更新的替换和主动清除不计入
+                    if (cause.wasEvicted()) {
+                        meterRegistry.counter("chat.memory.l1.removals", "cause", cause.name()).increment();
+                    }
+                })
+                .recordStats();
+        if (ttl > 0) {
+            // 不比 Redis 中的数据活得更久
+            builder.expireAfterWrite(Duration.ofSeconds(ttl));
+        }
+        this.localCache = CaffeineCacheMetrics.monitor(meterRegistry, builder.build(), "chatMemoryL1");
+        Gauge.builder("chat.memory.l1.weight", localCache,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L))
+                .description("本地缓存估算堆占用")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.l1.budget", chatMemoryNearCacheConfig, config -> config.getHeapBudget().toBytes())
+                .description("本地缓存堆占用预算")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.l2HitCounter = Counter.builder("chat.memory.l2")
+                .description("本地缓存未命中后读取 Redis 的结果")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.l2MissCounter = Counter.builder("chat.memory.l2")
+                .description("本地缓存未命中后读取 Redis 的结果")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        redisMessageListenerContainer.addMessageListener((message, pattern) ->
+                onMessage(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = memoryId.toString();
+        CachedMessages cached = localCache.getIfPresent(key);
+        if (cached != null && cached.messages != null) {
+            return new ArrayList<>(cached.messages);
+        }
+        RedisListChatMemoryStore.VersionedMessages loaded = redisStore.read(memoryId);
+        (loaded.getMessages().isEmpty() ? l2MissCounter : l2HitCounter).increment();
+        putIfNewer(key, loaded.getVersion(), loaded.getMessages());
+        return loaded.getMessages();
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = memoryId.toString();
+        long version = redisStore.write(memoryId, messages);
+        putIfNewer(key, version, messages);
+        publish(key, version);
+    }
+
+    /**
+     * 直接读取 Redis（比较后写入需要 Redis 中的版本号），并更新本地缓存
+     */
+    @Override
+    public RedisListChatMemoryStore.VersionedMessages read(Object memoryId) {
+        RedisListChatMemoryStore.VersionedMessages loaded = redisStore.read(memoryId);
+        putIfNewer(memoryId.toString(), loaded.getVersion(), loaded.getMessages());
+        return loaded;
+    }
+
+    @Override
+    public long updateMessagesIfVersion(Object memoryId, List<ChatMessage> messages, long expectedVersion) {
+        String key = memoryId.toString();
+        long version = redisStore.updateMessagesIfVersion(memoryId, messages, expectedVersion);
+        if (version > 0L) {
+            putIfNewer(key, version, messages);
+            publish(key, version);
+        }
+        return version;
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = memoryId.toString();
+        long version = redisStore.delete(memoryId);
+        putIfNewer(key, version, List.of());
+        publish(key, version);
+    }
+
+    /**
+     * 版本号不低于本地缓存时才写入本地缓存
+     */
+    private void putIfNewer(String key, long version, List<ChatMessage> messages) {
+        List<ChatMessage> snapshot = List.copyOf(messages);
+        localCache.asMap().compute(key, (k, existing) ->
+                existing == null || existing.version <= version ? new CachedMessages(version, snapshot) : existing);
+    }
+
+    /**
+     * 通知其他实例，失败（Redis 不可用）时只记录日志，其他实例的缓存按过期时间失效
+     */
+    private void publish(String key, long version) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + ":" + key + ":" + version);
+        } catch (Exception e) {
+            log.warn("发布对话记忆失效通知失败，memoryId: {}, error: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 处理通知：nodeId:memoryId:version
+     */
+    private void onMessage(String body) {
+        int first = body.indexOf(':');
+        int last = body.lastIndexOf(':');
+        if (first <= 0 || last <= first || !NumberUtil.isLong(body.substring(last + 1))) {
+            log.warn("忽略无法解析的对话记忆失效通知: {}", body);
+            return;
+        }
+        if (nodeId.equals(body.substring(0, first))) {
+            return;
+        }
+        String key = body.substring(first + 1, last);
+        long version = Long.parseLong(body.substring(last + 1));
+        // 本地缓存比通知旧（或没有缓存）时替换为占位，下次读取回源 Redis
+        localCache.asMap().compute(key, (k, existing) ->
+                existing == null || existing.version < version ? new CachedMessages(version, null) : existing);
+    }
+
+    /**
+     * 带版本号的缓存消息，messages 为 null 表示只记录了版本号的占位
+     */
+    private static class CachedMessages {
+
+        private final long version;
+
+        private final List<ChatMessage> messages;
+
+        private CachedMessages(long version, List<ChatMessage> messages) {
+            this.version = version;
+            this.messages = messages;
+        }
+
+        private int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, RetainedSizeEstimator.estimate(messages));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 token 预算裁剪的对话记忆
+ * 超出预算时按轮次（一条用户消息及其后的 AI、工具消息）从最旧的开始淘汰，整轮淘汰保证工具调用和结果成对出现；
+ * 以下内容始终保留：系统消息、最新一轮、最近一条带代码的 AI 消息所在的轮次（后续修改都基于这份代码）
+ * <p>
+ * 写入前先用 {@link SupersededCodePruner} 把被覆盖的旧版本文件替换为引用，从数据库加载历史时同样经过裁剪
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private static final String CODE_FENCE = "```";
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final int maxTokens;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, int maxTokens,
+                                 TokenCountEstimator tokenCountEstimator) {
+        this.id = id;
+        this.store = store;
+        this.maxTokens = maxTokens;
+        this.tokenCountEstimator = tokenCountEstimator;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            int systemIndex = findSystemMessage(messages);
+            if (systemIndex >= 0) {
+                if (messages.get(systemIndex).equals(message)) {
+                    return;
+                }
+                messages.remove(systemIndex);
+            }
+        }
+        messages.add(message);
+        store.updateMessages(id, fitToBudget(SupersededCodePruner.prune(messages)));
+    }
+
+    /**
+     * 整体替换对话记忆，只写一次存储（从数据库加载历史时使用，不必逐条 add）
+     *
+     * @param messages 按时间正序排列的消息
+     */
+    public void setMessages(List<ChatMessage> messages) {
+        store.updateMessages(id, fitToBudget(SupersededCodePruner.prune(new ArrayList<>(messages))));
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return fitToBudget(new ArrayList<>(store.getMessages(id)));
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 淘汰最旧的轮次直到不超过预算，必须保留的内容本身超出预算时不再裁剪
+     */
+    private List<ChatMessage> fitToBudget(List<ChatMessage> messages) {
+        int[] tokens = new int[messages.size()];
+        int total = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            tokens[i] = tokenCountEstimator.estimateTokenCountInMessage(messages.get(i));
+            total += tokens[i];
+        }
+        if (total <= maxTokens) {
+            return messages;
+        }
+        int[] turns = assignTurns(messages);
+        int newestTurn = lastTurn(turns);
+        int latestCodeTurn = -1;
+        for (int i = 0; i < messages.size(); i++) {
+            if (isCodeBearing(messages.get(i))) {
+                latestCodeTurn = turns[i];
+            }
+        }
+        boolean[] evicted = new boolean[newestTurn + 1];
+        for (int candidate = 0; candidate < newestTurn && total > maxTokens; candidate++) {
+            if (candidate == latestCodeTurn) {
+                continue;
+            }
+            evicted[candidate] = true;
+            for (int i = 0; i < messages.size(); i++) {
+                if (turns[i] == candidate) {
+                    total -= tokens[i];
+                }
+            }
+        }
+        List<ChatMessage> kept = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            if (turns[i] < 0 || !evicted[turns[i]]) {
+                kept.add(messages.get(i));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * 每条消息所属轮次：用户消息开启新的一轮，系统消息不属于任何轮次（-1）
+     */
+    static int[] assignTurns(List<ChatMessage> messages) {
+        int[] turns = new int[messages.size()];
+        int turn = 0;
+        boolean started = false;
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            if (message instanceof SystemMessage) {
+                turns[i] = -1;
+                continue;
+            }
+            if (message instanceof UserMessage && started) {
+                turn++;
+            }
+            started = true;
+            turns[i] = turn;
+        }
+        return turns;
+    }
+
+    static int lastTurn(int[] turns) {
+        int last = -1;
+        for (int turn : turns) {
+            last = Math.max(last, turn);
+        }
+        return last;
+    }
+
+    /**
+     * 是否为带代码的 AI 消息：包含代码块，或通过工具调用写文件
+     */
+    private static boolean isCodeBearing(ChatMessage message) {
+        if (!(message instanceof AiMessage aiMessage)) {
+            return false;
+        }
+        return aiMessage.hasToolExecutionRequests()
+                || (aiMessage.text() != null && aiMessage.text().contains(CODE_FENCE));
+    }
+
+    private static int findSystemMessage(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof SystemMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
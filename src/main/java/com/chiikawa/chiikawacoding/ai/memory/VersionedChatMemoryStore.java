@@ -0,0 +1,31 @@
+package com.chiikawa.chiikawacoding.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.List;
+
+/**
+ * 带版本号的对话记忆存储
+ * 后台任务（如对话记忆压缩）读取后经过较长时间才写回，按读取时的版本号比较后写入，期间有其他写入时放弃，不覆盖新追加的消息
+ */
+public interface VersionedChatMemoryStore extends ChatMemoryStore {
+
+    /**
+     * 读取消息和版本号
+     *
+     * @param memoryId 记忆 ID
+     * @return 消息和版本号，不存在时消息为空、版本号为 0
+     */
+    RedisListChatMemoryStore.VersionedMessages read(Object memoryId);
+
+    /**
+     * 当前版本号与预期一致时才写入
+     *
+     * @param memoryId        记忆 ID
+     * @param messages        当前窗口的全部消息，不能为空
+     * @param expectedVersion 读取时的版本号
+     * @return 写入后的版本号，版本号不一致（读取后被修改）时返回 0
+     */
+    long updateMessagesIfVersion(Object memoryId, List<ChatMessage> messages, long expectedVersion);
+}
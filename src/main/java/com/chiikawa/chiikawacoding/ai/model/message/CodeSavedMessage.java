@@ -0,0 +1,48 @@
+package com.chiikawa.chiikawacoding.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 代码保存完成消息
+ * 代码文件全部写入磁盘后发送，前端据此加载预览
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class CodeSavedMessage extends StreamMessage {
+
+    /**
+     * 是否保存成功
+     */
+    private boolean success;
+
+    /**
+     * 保存目录（相对代码输出根目录，即预览路径，如 html_1）
+     */
+    private String savedPath;
+
+    /**
+     * 写入的文件数
+     */
+    private int fileCount;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    public CodeSavedMessage(String savedPath, int fileCount) {
+        super(StreamMessageTypeEnum.CODE_SAVED.getValue());
+        this.success = true;
+        this.savedPath = savedPath;
+        this.fileCount = fileCount;
+    }
+
+    public CodeSavedMessage(String errorMessage) {
+        super(StreamMessageTypeEnum.CODE_SAVED.getValue());
+        this.success = false;
+        this.errorMessage = errorMessage;
+    }
+}
@@ -0,0 +1,31 @@
+package com.chiikawa.chiikawacoding.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 排队位置消息
+ * 生成请求在准入队列中等待时发送，位置变化时更新
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class QueuePositionMessage extends StreamMessage {
+
+    /**
+     * 当前排队位置（从 1 开始）
+     */
+    private int position;
+
+    /**
+     * 当前排队总数
+     */
+    private int queueSize;
+
+    public QueuePositionMessage(int position, int queueSize) {
+        super(StreamMessageTypeEnum.QUEUE_POSITION.getValue());
+        this.position = position;
+        this.queueSize = queueSize;
+    }
+}
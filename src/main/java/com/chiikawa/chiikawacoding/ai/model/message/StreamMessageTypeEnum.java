@@ -11,7 +11,10 @@ public enum StreamMessageTypeEnum {
 
     AI_RESPONSE("ai_response", "AI响应"),
     TOOL_REQUEST("tool_request", "工具请求"),
-    TOOL_EXECUTED("tool_executed", "工具执行结果");
+    TOOL_EXECUTED("tool_executed", "工具执行结果"),
+    CODE_SAVED("code_saved", "代码保存完成"),
+    QUEUE_POSITION("queue_position", "排队位置"),
+    STREAM_RESET("stream_reset", "流重置");
 
     private final String value;
     private final String text;
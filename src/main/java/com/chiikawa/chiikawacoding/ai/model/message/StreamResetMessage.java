@@ -0,0 +1,26 @@
+package com.chiikawa.chiikawacoding.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 流重置消息
+ * 续传或加入正在进行的生成时，需要的事件已不在缓冲区中（或生成已取消），无法补齐中间缺失的内容，
+ * 客户端应丢弃已拼接的内容，改为从对话历史读取完整结果
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class StreamResetMessage extends StreamMessage {
+
+    /**
+     * 原因
+     */
+    private String reason;
+
+    public StreamResetMessage(String reason) {
+        super(StreamMessageTypeEnum.STREAM_RESET.getValue());
+        this.reason = reason;
+    }
+}
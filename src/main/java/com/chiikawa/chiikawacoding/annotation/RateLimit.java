@@ -0,0 +1,42 @@
+package com.chiikawa.chiikawacoding.annotation;
+
+import com.chiikawa.chiikawacoding.model.enums.RateLimitTypeEnum;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 令牌桶限流，多个实例之间共享（基于 Redis）
+ * 每个限流维度各自一个令牌桶，所有桶都有令牌时才放行
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+
+    /**
+     * 限流资源名，同名资源共享令牌桶
+     */
+    String key();
+
+    /**
+     * 限流维度，默认同时按用户和 IP 限流
+     */
+    RateLimitTypeEnum[] limitTypes() default {RateLimitTypeEnum.USER, RateLimitTypeEnum.IP};
+
+    /**
+     * 每个周期内允许的请求数（也是桶容量，即允许的突发请求数）
+     */
+    int permits();
+
+    /**
+     * 周期（秒）
+     */
+    int periodSeconds() default 60;
+
+    /**
+     * 请求带有其中任一请求头时不限流，用于不产生新开销的请求（如带 Last-Event-ID 的断线续传）
+     */
+    String[] exemptHeaders() default {};
+}
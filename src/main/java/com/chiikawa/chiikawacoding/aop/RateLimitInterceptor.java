@@ -0,0 +1,127 @@
+package com.chiikawa.chiikawacoding.aop;
+
+import cn.hutool.core.lang.Validator;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.StrUtil;
+import com.chiikawa.chiikawacoding.annotation.RateLimit;
+import com.chiikawa.chiikawacoding.config.RateLimitConfig;
+import com.chiikawa.chiikawacoding.exception.ErrorCode;
+import com.chiikawa.chiikawacoding.exception.RetryLaterException;
+import com.chiikawa.chiikawacoding.model.entity.User;
+import com.chiikawa.chiikawacoding.model.enums.RateLimitTypeEnum;
+import com.chiikawa.chiikawacoding.ratelimit.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.chiikawa.chiikawacoding.common.constant.UserConstant.USER_LOGIN_STATE;
+
+@Aspect
+@Component
+@Slf4j
+public class RateLimitInterceptor {
+
+    @Resource
+    private TokenBucketRateLimiter tokenBucketRateLimiter;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private RateLimitConfig rateLimitConfig;
+
+    /**
+     * 执行拦截
+     *
+     * @param joinPoint 切入点
+     * @param rateLimit 限流注解
+     */
+    @Around("@annotation(rateLimit)")
+    public Object doInterceptor(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable {
+        RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
+        HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
+        for (String exemptHeader : rateLimit.exemptHeaders()) {
+            if (StrUtil.isNotBlank(request.getHeader(exemptHeader))) {
+                return joinPoint.proceed();
+            }
+        }
+        // 每个限流维度对应一个令牌桶
+        List<String> keys = new ArrayList<>();
+        for (RateLimitTypeEnum limitType : rateLimit.limitTypes()) {
+            String subject = switch (limitType) {
+                case USER -> getLoginUserId(request);
+                case IP -> getClientIp(request);
+            };
+            // 未登录时没有用户维度，交给后续登录校验处理
+            if (subject != null) {
+                keys.add(rateLimit.key() + ":" + limitType.getValue() + ":" + subject);
+            }
+        }
+        if (keys.isEmpty()) {
+            return joinPoint.proceed();
+        }
+        long waitMillis = tokenBucketRateLimiter.tryAcquire(keys, rateLimit.permits(), rateLimit.periodSeconds());
+        if (waitMillis > 0) {
+            meterRegistry.counter("rate.limit.rejected", "key", rateLimit.key()).increment();
+            log.info("请求被限流，keys: {}, 需等待 {} ms", keys, waitMillis);
+            throw new RetryLaterException(ErrorCode.TOO_MANY_REQUEST, "请求过于频繁，请稍后再试",
+                    Math.max(1, (waitMillis + 999) / 1000));
+        }
+        return joinPoint.proceed();
+    }
+
+    /**
+     * 客户端 IP：连接来自可信代理时，从 X-Forwarded-For 的最右侧开始跳过可信代理，第一个不可信的地址即客户端；
+     * 否则直接使用连接地址（客户端可以任意设置转发请求头）
+     */
+    private String getClientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        List<String> hops = StrUtil.splitTrim(request.getHeader("X-Forwarded-For"), ',');
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            if (!isTrustedProxy(hops.get(i))) {
+                return hops.get(i);
+            }
+        }
+        return hops.isEmpty() ? remoteAddr : hops.getFirst();
+    }
+
+    private boolean isTrustedProxy(String ip) {
+        for (String trustedProxy : rateLimitConfig.getTrustedProxies()) {
+            if (trustedProxy.equals(ip)
+                    || (trustedProxy.contains("/") && Validator.isIpv4(ip) && NetUtil.isInRange(ip, trustedProxy))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从会话中获取登录用户 ID，不查询数据库
+     */
+    private String getLoginUserId(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        Object userObj = session.getAttribute(USER_LOGIN_STATE);
+        if (userObj instanceof User user && user.getId() != null) {
+            return String.valueOf(user.getId());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 应用数量缓存配置
+ * 应用列表分页时使用缓存的总数（用户的应用数、精选应用数、应用总数），不再每次执行 COUNT 查询
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app-count-cache")
+@Data
+public class AppCountCacheConfig {
+
+    /**
+     * 是否启用，关闭时不带筛选条件的分页也改为探测下一页
+     */
+    private boolean enabled = true;
+
+    /**
+     * 计数过期时间，创建、删除应用时增量更新，过期后重新统计以纠正偏差
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+}
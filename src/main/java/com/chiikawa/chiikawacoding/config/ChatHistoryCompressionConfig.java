@@ -0,0 +1,47 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 对话历史压缩存储配置
+ * 超过阈值的消息压缩后写入 messageCompressed 列，减少 chat_history 的存储和缓冲池占用
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history-compression")
+@Data
+public class ChatHistoryCompressionConfig {
+
+    /**
+     * 是否启用，关闭后新消息不再压缩（已压缩的消息仍可正常读取）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 压缩阈值（字符数），更短的消息压缩收益很小
+     */
+    private int thresholdChars = 1024;
+
+    /**
+     * 压缩存储时在 message 列中保留的明文前缀长度（字符数），管理员按消息内容搜索时匹配这部分内容
+     */
+    private int searchablePrefixChars = 1024;
+
+    /**
+     * 是否在启动后于后台压缩已有的消息
+     */
+    private boolean migrationEnabled = true;
+
+    /**
+     * 后台迁移每批处理的消息数
+     */
+    private int migrationBatchSize = 100;
+
+    /**
+     * 后台迁移每批之间的间隔，避免占用过多数据库资源
+     */
+    private Duration migrationInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,61 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 对话历史分表配置
+ * 按 appId 哈希把 chat_history 拆分为 shardCount 张物理表（chat_history_00 ...），
+ * 从单表迁移时依次切换 SINGLE -> DUAL_WRITE（同时回填历史数据）-> SHARDED
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history-sharding")
+@Data
+public class ChatHistoryShardingConfig {
+
+    /**
+     * 分表模式
+     */
+    private Mode mode = Mode.SINGLE;
+
+    /**
+     * 分表数量，启用后不能修改（修改需要重新迁移）
+     */
+    private int shardCount = 16;
+
+    /**
+     * 跨分表并行查询的线程数
+     */
+    private int scatterPoolSize = 8;
+
+    /**
+     * 回填每批复制的行数
+     */
+    private int backfillBatchSize = 500;
+
+    /**
+     * 回填每批之间的间隔，避免占用过多数据库资源
+     */
+    private Duration backfillInterval = Duration.ofMillis(200);
+
+    public enum Mode {
+
+        /**
+         * 只使用 chat_history 单表
+         */
+        SINGLE,
+
+        /**
+         * 读 chat_history，写 chat_history 和分表，期间回填历史数据
+         */
+        DUAL_WRITE,
+
+        /**
+         * 只读写分表
+         */
+        SHARDED
+    }
+}
@@ -0,0 +1,53 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 对话历史异步批量写入配置
+ * 对话消息先写本地追加日志并进入内存队列，由后台线程按条数或时间批量插入数据库，
+ * 请求线程和流式回调线程不再等待数据库
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history-write-behind")
+@Data
+public class ChatHistoryWriteBehindConfig {
+
+    /**
+     * 是否启用，关闭时同步插入
+     */
+    private boolean enabled = true;
+
+    /**
+     * 队列容量，队列满时由调用线程同步插入
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 每批最大条数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 攒批的最长等待时间
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * 插入失败后的重试间隔
+     */
+    private Duration retryInterval = Duration.ofSeconds(1);
+
+    /**
+     * 追加日志目录，启动时重放其中尚未落库的消息
+     */
+    private String journalDir = System.getProperty("user.dir") + "/tmp/chat_history_journal";
+
+    /**
+     * 单个日志分段的最大字节数，超出后切换到新分段，分段中的消息全部落库后删除
+     */
+    private long journalSegmentBytes = 16 * 1024 * 1024;
+}
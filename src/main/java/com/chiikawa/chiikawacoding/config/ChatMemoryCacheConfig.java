@@ -0,0 +1,81 @@
+package com.chiikawa.chiikawacoding.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话记忆缓存配置
+ * 对话记忆在独立线程池中异步加载（查询数据库历史并写入 Redis），
+ * 访问频繁的应用在过期前后台刷新，请求线程不再等待数据库
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory-cache")
+@Data
+public class ChatMemoryCacheConfig {
+
+    /**
+     * 最大缓存应用数
+     */
+    private long maximumSize = 1000;
+
+    /**
+     * 写入后多久在访问时触发后台刷新，需小于写入后过期时间
+     */
+    private Duration refreshAfterWrite = Duration.ofMinutes(20);
+
+    /**
+     * 写入后过期时间
+     */
+    private Duration expireAfterWrite = Duration.ofHours(2);
+
+    /**
+     * 访问后过期时间
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+
+    /**
+     * 启动后预热的最近活跃应用数，0 表示不预热
+     */
+    private int warmUpSize = 100;
+
+    /**
+     * 预热范围：最近多久内有对话的应用
+     */
+    private Duration warmUpWindow = Duration.ofDays(1);
+
+    /**
+     * 加载线程数
+     */
+    private int loaderPoolSize = 4;
+
+    /**
+     * 加载等待队列容量，队列满时由调用线程加载
+     */
+    private int loaderQueueCapacity = 256;
+
+    /**
+     * 对话记忆加载线程池
+     * 队列深度等指标以 executor.* 导出（name=chatMemoryLoad）
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor chatMemoryLoadExecutor(MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                loaderPoolSize, loaderPoolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(loaderQueueCapacity),
+                ThreadFactoryBuilder.create().setNamePrefix("chat-memory-load-").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "chatMemoryLoad");
+        return executor;
+    }
+}
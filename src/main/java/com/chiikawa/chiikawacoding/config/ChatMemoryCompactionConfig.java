@@ -0,0 +1,69 @@
+package com.chiikawa.chiikawacoding.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话记忆压缩配置
+ * 对话记忆超过阈值后，在后台用对话模型把较早的轮次总结为一轮对话，长期使用的应用提示词大小保持稳定
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory-compaction")
+@Data
+public class ChatMemoryCompactionConfig {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 触发压缩的 token 数（不含系统消息），需小于对话记忆窗口的 token 预算，否则窗口会先淘汰旧轮次
+     */
+    private int triggerTokens = 10000;
+
+    /**
+     * 保留原文的最近轮次数
+     */
+    private int keepRecentTurns = 2;
+
+    /**
+     * 线程数
+     */
+    private int poolSize = 1;
+
+    /**
+     * 等待队列容量
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * 对话记忆压缩线程池
+     * 压缩可以推迟到下次生成后再做，队列满时拒绝并计数 chat.memory.compaction.rejected
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor chatMemoryCompactionExecutor(MeterRegistry meterRegistry) {
+        Counter rejectedCounter = meterRegistry.counter("chat.memory.compaction.rejected");
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                ThreadFactoryBuilder.create().setNamePrefix("chat-memory-compaction-").setDaemon(true).build(),
+                (runnable, pool) -> {
+                    rejectedCounter.increment();
+                    new ThreadPoolExecutor.AbortPolicy().rejectedExecution(runnable, pool);
+                });
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "chatMemoryCompaction");
+        return executor;
+    }
+}
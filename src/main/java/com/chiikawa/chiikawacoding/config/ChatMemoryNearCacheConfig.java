@@ -0,0 +1,34 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 对话记忆本地近缓存配置
+ * 对话记忆每次读写都要访问 Redis，近缓存在本实例保存最近使用的消息，
+ * 其他实例写入后通过 Redis 发布订阅按版本号清除
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory-near-cache")
+@Data
+public class ChatMemoryNearCacheConfig {
+
+    /**
+     * 是否启用，关闭时直接读写 Redis
+     */
+    private boolean enabled = true;
+
+    /**
+     * 堆占用预算，按估算的消息和工具调用内容大小淘汰
+     */
+    private DataSize heapBudget = DataSize.ofMegabytes(256);
+
+    /**
+     * 访问后过期时间，写入后过期时间与 Redis 中的过期时间一致
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+}
@@ -0,0 +1,59 @@
+package com.chiikawa.chiikawacoding.config;
+
+import com.chiikawa.chiikawacoding.ai.memory.LocalTokenCountEstimator;
+import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.model.TokenCountEstimator;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 对话记忆窗口配置
+ * AI 消息是整份 HTML / Vue 文件，按消息条数限制窗口时上下文可能远超需要，
+ * 改为按 token 预算裁剪，预算按代码生成类型配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory-window")
+@Data
+public class ChatMemoryWindowConfig {
+
+    /**
+     * 首次创建对话记忆时从数据库加载的最大消息数
+     */
+    private int maxLoadMessages = 20;
+
+    /**
+     * 未配置生成类型时的 token 预算
+     */
+    private int defaultMaxTokens = 24000;
+
+    /**
+     * 各代码生成类型的 token 预算
+     */
+    private Map<CodeGenTypeEnum, Integer> maxTokens = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 获取代码生成类型的 token 预算
+     *
+     * @param codeGenType 代码生成类型，可以为 null
+     * @return token 预算
+     */
+    public int resolveMaxTokens(CodeGenTypeEnum codeGenType) {
+        if (codeGenType == null) {
+            return defaultMaxTokens;
+        }
+        return maxTokens.getOrDefault(codeGenType, defaultMaxTokens);
+    }
+
+    /**
+     * 对话记忆使用的 token 数估算，替换为其他实现（如模型分词器）时覆盖此 Bean
+     */
+    @Bean
+    public TokenCountEstimator chatMemoryTokenCountEstimator() {
+        return new LocalTokenCountEstimator();
+    }
+}
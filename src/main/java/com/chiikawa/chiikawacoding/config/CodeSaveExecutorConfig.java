@@ -0,0 +1,54 @@
+package com.chiikawa.chiikawacoding.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码保存线程池配置
+ * 代码解析后的文件写入在独立的有界线程池中执行，避免慢磁盘阻塞大模型流式回调线程
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-save")
+@Data
+public class CodeSaveExecutorConfig {
+
+    /**
+     * 线程数
+     */
+    private int poolSize = 4;
+
+    /**
+     * 等待队列容量
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * 代码保存线程池
+     * 队列深度等指标以 executor.* 导出（name=codeSave），队列满时拒绝并计数 code.save.rejected
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor codeSaveExecutor(MeterRegistry meterRegistry) {
+        Counter rejectedCounter = meterRegistry.counter("code.save.rejected");
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                ThreadFactoryBuilder.create().setNamePrefix("code-save-").setDaemon(true).build(),
+                (runnable, pool) -> {
+                    rejectedCounter.increment();
+                    new ThreadPoolExecutor.AbortPolicy().rejectedExecution(runnable, pool);
+                });
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "codeSave");
+        return executor;
+    }
+}
@@ -0,0 +1,35 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 代码生成准入配置
+ * 限制同时进行的大模型流式调用数量，超出的请求排队等待
+ */
+@Configuration
+@ConfigurationProperties(prefix = "generation-admission")
+@Data
+public class GenerationAdmissionConfig {
+
+    /**
+     * 全局最大并发生成数
+     */
+    private int maxConcurrent = 32;
+
+    /**
+     * 单个用户最大并发生成数
+     */
+    private int maxConcurrentPerUser = 2;
+
+    /**
+     * 最大排队数，超出时拒绝
+     */
+    private int maxQueueSize = 200;
+
+    /**
+     * 拒绝时建议的重试间隔（秒）
+     */
+    private long retryAfterSeconds = 30;
+}
@@ -0,0 +1,53 @@
+package com.chiikawa.chiikawacoding.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 生成结果缓存配置
+ * 相同生成类型、系统提示词、用户消息和对话记忆的生成请求直接重放缓存的流式片段
+ */
+@Configuration
+@ConfigurationProperties(prefix = "generation-cache")
+@Data
+public class GenerationCacheConfig {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存的最大总字符数
+     */
+    private long maximumWeight = 20_000_000L;
+
+    /**
+     * 写入后过期时间
+     */
+    private Duration expireAfterWrite = Duration.ofHours(24);
+
+    /**
+     * 生成结果缓存：缓存键 -> 流式片段
+     * 按片段总字符数淘汰，命中率等指标以 cache.* 导出（name=generationResult）
+     */
+    @Bean
+    public Cache<String, List<String>> generationResultCache(MeterRegistry meterRegistry) {
+        Cache<String, List<String>> cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String key, List<String> chunks) -> chunks.stream().mapToInt(String::length).sum())
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "generationResult");
+    }
+}
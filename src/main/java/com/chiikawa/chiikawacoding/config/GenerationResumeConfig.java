@@ -0,0 +1,28 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 生成流断线续传配置
+ * 每次生成的事件保留在有界环形缓冲区中，客户端带 Last-Event-ID 重连时从下一条事件继续推送
+ */
+@Configuration
+@ConfigurationProperties(prefix = "generation-resume")
+@Data
+public class GenerationResumeConfig {
+
+    /**
+     * 每次生成最多保留的事件数，超出时丢弃最早的事件
+     */
+    private int bufferSize = 10000;
+
+    /**
+     * 续传窗口：所有客户端断开后等待重连的时间（超时后取消生成），
+     * 以及生成结束后保留事件的时间
+     */
+    private Duration resumeWindow = Duration.ofSeconds(30);
+}
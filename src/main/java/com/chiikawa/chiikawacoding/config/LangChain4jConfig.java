@@ -7,11 +7,14 @@ import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.service.AiServices;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class LangChain4jConfig {
 
@@ -54,7 +57,7 @@ public class LangChain4jConfig {
     }
 
     @Bean
-    public StreamingChatModel openAiStreamingChatModel() {
+    public StreamingChatModel openAiStreamingChatModel(ChatModelListener promptTokenLogListener) {
         return OpenAiStreamingChatModel.builder()
                 .baseUrl(baseUrl)
                 .apiKey(apiKey)
@@ -64,6 +67,7 @@ public class LangChain4jConfig {
                 .maxTokens(maxTokens)
                 .strictJsonSchema(strictJsonSchema)
                 .responseFormat(responseFormat)
+                .listeners(List.of(promptTokenLogListener))
                 .build();
     }
 }
@@ -0,0 +1,33 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 限流配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitConfig {
+
+    /**
+     * Redis 限流检查的超时时间（毫秒），超时后使用本机令牌桶
+     */
+    private long redisTimeoutMillis = 50;
+
+    /**
+     * Redis 超时或出错后，在这段时间（毫秒）内直接使用本机令牌桶
+     */
+    private long redisRetryIntervalMillis = 5000;
+
+    /**
+     * 可信的反向代理地址（IP 或 IPv4 CIDR），只有来自这些地址的请求才读取 X-Forwarded-For，
+     * 否则按连接地址限流，避免客户端伪造请求头绕过 IP 限流
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+}
@@ -1,12 +1,15 @@
 package com.chiikawa.chiikawacoding.config;
 
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "langchain4j.open-ai.chat-model")
 @Data
@@ -20,7 +23,7 @@ public class ReasoningStreamingChatModelConfig {
      * 推理流式模型（用于 Vue 项目生成，带工具调用）
      */
     @Bean
-    public StreamingChatModel reasoningStreamingChatModel() {
+    public StreamingChatModel reasoningStreamingChatModel(ChatModelListener promptTokenLogListener) {
         // 为了测试方便临时修改
         final String modelName = "deepseek-chat";
         final int maxTokens = 8192;
@@ -34,6 +37,7 @@ public class ReasoningStreamingChatModelConfig {
                 .maxTokens(maxTokens)
                 .logRequests(true)
                 .logResponses(true)
+                .listeners(List.of(promptTokenLogListener))
                 .build();
     }
 }
@@ -1,32 +1,37 @@
 package com.chiikawa.chiikawacoding.config;
 
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import com.chiikawa.chiikawacoding.ai.memory.RedisListChatMemoryStore;
+import com.chiikawa.chiikawacoding.ai.memory.TieredChatMemoryStore;
+import com.chiikawa.chiikawacoding.ai.memory.VersionedChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 @Configuration
 @ConfigurationProperties(prefix = "spring.data.redis")
 @Data
 public class RedisChatMemoryStoreConfig {
 
-    private String host;
-
-    private int port;
-
-    private String password;
-
     private long ttl;
 
+    /**
+     * 对话记忆存储：每条消息作为 Redis 列表元素增量写入，启用近缓存时在前面加一层本地缓存
+     */
     @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        return RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .password(password)
-                .ttl(ttl)
-                .build();
+    public VersionedChatMemoryStore redisChatMemoryStore(StringRedisTemplate stringRedisTemplate,
+                                                         RedisMessageListenerContainer redisMessageListenerContainer,
+                                                         ChatMemoryNearCacheConfig chatMemoryNearCacheConfig,
+                                                         MeterRegistry meterRegistry) {
+        RedisListChatMemoryStore redisStore = new RedisListChatMemoryStore(stringRedisTemplate, ttl, meterRegistry);
+        if (!chatMemoryNearCacheConfig.isEnabled()) {
+            return redisStore;
+        }
+        return new TieredChatMemoryStore(redisStore, stringRedisTemplate, redisMessageListenerContainer,
+                chatMemoryNearCacheConfig, ttl, meterRegistry);
     }
 
 }
@@ -0,0 +1,32 @@
+package com.chiikawa.chiikawacoding.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * SSE 片段合并配置
+ * 生成接口把一段时间窗口内的 AI 响应片段合并为一个事件发送，减少事件数和写出次数
+ */
+@Configuration
+@ConfigurationProperties(prefix = "sse-coalesce")
+@Data
+public class SseCoalesceConfig {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最长合并时间：第一个片段到达后最多等待多久发送
+     */
+    private Duration maxDelay = Duration.ofMillis(50);
+
+    /**
+     * 合并后单个事件的最大字符数，达到后立即发送
+     */
+    private int maxChars = 4096;
+}
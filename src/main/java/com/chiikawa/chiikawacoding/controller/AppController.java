@@ -3,10 +3,15 @@ package com.chiikawa.chiikawacoding.controller;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.chiikawa.chiikawacoding.ai.model.message.AiResponseMessage;
+import com.chiikawa.chiikawacoding.ai.model.message.StreamMessage;
 import com.chiikawa.chiikawacoding.annotation.AuthCheck;
+import com.chiikawa.chiikawacoding.annotation.RateLimit;
 import com.chiikawa.chiikawacoding.common.baseReqAndRes.BaseResponse;
 import com.chiikawa.chiikawacoding.common.baseReqAndRes.DeleteRequest;
 import com.chiikawa.chiikawacoding.common.utils.ResultUtils;
+import com.chiikawa.chiikawacoding.core.GenerationEvent;
+import com.chiikawa.chiikawacoding.core.GenerationEventCoalescer;
 import com.chiikawa.chiikawacoding.common.constant.UserConstant;
 import com.chiikawa.chiikawacoding.exception.BusinessException;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
@@ -44,6 +49,9 @@ public class AppController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private GenerationEventCoalescer generationEventCoalescer;
+
     /**
      * 创建应用
      *
@@ -190,12 +198,7 @@ public class AppController {
             pageSize = 20;
             appQueryRequest.setPageSize((int) pageSize);
         }
-        long pageNum = appQueryRequest.getPageNum();
-        Page<App> appPage = appService.page(Page.of(pageNum, pageSize),
-                appService.getUserAppQueryWrapper(appQueryRequest, request));
-        Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotalRow());
-        appVOPage.setRecords(appService.getAppVOList(appPage.getRecords()));
-        return ResultUtils.success(appVOPage);
+        return ResultUtils.success(appService.listUserAppVOByPage(appQueryRequest, request));
     }
 
     /**
@@ -213,12 +216,7 @@ public class AppController {
             pageSize = 20;
             appQueryRequest.setPageSize((int) pageSize);
         }
-        long pageNum = appQueryRequest.getPageNum();
-        Page<App> appPage = appService.page(Page.of(pageNum, pageSize),
-                appService.getFeaturedAppQueryWrapper(appQueryRequest));
-        Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotalRow());
-        appVOPage.setRecords(appService.getAppVOList(appPage.getRecords()));
-        return ResultUtils.success(appVOPage);
+        return ResultUtils.success(appService.listFeaturedAppVOByPage(appQueryRequest));
     }
 
     /**
@@ -231,13 +229,7 @@ public class AppController {
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
     public BaseResponse<Page<AppVO>> listAdminAppVOByPage(@RequestBody AppQueryRequest appQueryRequest) {
         ThrowUtils.throwIf(appQueryRequest == null, ErrorCode.PARAMS_ERROR);
-        long pageNum = appQueryRequest.getPageNum();
-        long pageSize = appQueryRequest.getPageSize();
-        Page<App> appPage = appService.page(Page.of(pageNum, pageSize),
-                appService.getAdminAppQueryWrapper(appQueryRequest));
-        Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, appPage.getTotalRow());
-        appVOPage.setRecords(appService.getAppVOList(appPage.getRecords()));
-        return ResultUtils.success(appVOPage);
+        return ResultUtils.success(appService.listAdminAppVOByPage(appQueryRequest));
     }
 
     /**
@@ -249,8 +241,11 @@ public class AppController {
      * @return 生成结果流
      */
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    // 带 Last-Event-ID 的请求只续传已有的生成，不会启动新的生成；限流返回 429 会让浏览器停止自动重连
+    @RateLimit(key = "chat_gen_code", permits = 10, exemptHeaders = "Last-Event-ID")
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
@@ -258,17 +253,10 @@ public class AppController {
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
         // 调用服务生成代码（流式）
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
-        // 转换为 ServerSentEvent 格式
-        return contentFlux
-                .map(chunk -> {
-                    // 将内容包装成JSON对象
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
+        Flux<GenerationEvent> eventFlux = appService.chatToGenCode(appId, message, lastEventId, loginUser);
+        // 合并时间窗口内的响应片段，再转换为 ServerSentEvent 格式
+        return generationEventCoalescer.coalesce(eventFlux)
+                .map(this::toServerSentEvent)
                 .concatWith(Mono.just(
                         // 发送结束事件
                         ServerSentEvent.<String>builder()
@@ -278,6 +266,31 @@ public class AppController {
                 ));
     }
 
+    /**
+     * 将生成事件转换为 ServerSentEvent
+     * AI 响应片段作为默认事件发送，其他消息按消息类型作为具名事件发送，均带有事件 ID 用于断线续传
+     *
+     * @param generationEvent 生成事件
+     * @return ServerSentEvent
+     */
+    private ServerSentEvent<String> toServerSentEvent(GenerationEvent generationEvent) {
+        StreamMessage streamMessage = generationEvent.getMessage();
+        if (streamMessage instanceof AiResponseMessage aiResponseMessage) {
+            // 将内容包装成JSON对象
+            Map<String, String> wrapper = Map.of("d", aiResponseMessage.getData());
+            String jsonData = JSONUtil.toJsonStr(wrapper);
+            return ServerSentEvent.<String>builder()
+                    .id(generationEvent.getEventId())
+                    .data(jsonData)
+                    .build();
+        }
+        return ServerSentEvent.<String>builder()
+                .id(generationEvent.getEventId())
+                .event(streamMessage.getType())
+                .data(JSONUtil.toJsonStr(streamMessage))
+                .build();
+    }
+
     /**
      * 应用部署
      *
@@ -286,6 +299,7 @@ public class AppController {
      * @return 部署 URL
      */
     @PostMapping("/deploy")
+    @RateLimit(key = "deploy", permits = 5)
     public BaseResponse<String> deployApp(@RequestBody AppDeployRequest appDeployRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(appDeployRequest == null, ErrorCode.PARAMS_ERROR);
         Long appId = appDeployRequest.getAppId();
@@ -4,13 +4,17 @@ import com.chiikawa.chiikawacoding.annotation.AuthCheck;
 import com.chiikawa.chiikawacoding.common.baseReqAndRes.BaseResponse;
 import com.chiikawa.chiikawacoding.common.utils.ResultUtils;
 import com.chiikawa.chiikawacoding.common.constant.UserConstant;
+import com.chiikawa.chiikawacoding.config.ChatHistoryShardingConfig.Mode;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryShardBackfill;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryShardRouter;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
 import com.chiikawa.chiikawacoding.exception.ThrowUtils;
 import com.chiikawa.chiikawacoding.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.chiikawa.chiikawacoding.model.entity.User;
+import com.chiikawa.chiikawacoding.model.vo.ChatHistoryCursorPageVO;
+import com.chiikawa.chiikawacoding.model.vo.ChatHistoryShardBackfillVO;
 import com.chiikawa.chiikawacoding.service.UserService;
 import com.mybatisflex.core.paginate.Page;
-import com.mybatisflex.core.query.QueryWrapper;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +39,12 @@ public class ChatHistoryController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ChatHistoryShardBackfill chatHistoryShardBackfill;
+
+    @Autowired
+    private ChatHistoryShardRouter chatHistoryShardRouter;
+
 
     /**
      * 保存对话历史。
@@ -44,6 +54,7 @@ public class ChatHistoryController {
      */
     @PostMapping("save")
     public boolean save(@RequestBody ChatHistory chatHistory) {
+        checkLogicalTableWritable();
         return chatHistoryService.save(chatHistory);
     }
 
@@ -55,6 +66,7 @@ public class ChatHistoryController {
      */
     @DeleteMapping("remove/{id}")
     public boolean remove(@PathVariable Long id) {
+        checkLogicalTableWritable();
         return chatHistoryService.removeById(id);
     }
 
@@ -66,6 +78,7 @@ public class ChatHistoryController {
      */
     @PutMapping("update")
     public boolean update(@RequestBody ChatHistory chatHistory) {
+        checkLogicalTableWritable();
         return chatHistoryService.updateById(chatHistory);
     }
 
@@ -76,6 +89,7 @@ public class ChatHistoryController {
      */
     @GetMapping("list")
     public List<ChatHistory> list() {
+        checkLogicalTableReadable();
         return chatHistoryService.list();
     }
 
@@ -87,6 +101,7 @@ public class ChatHistoryController {
      */
     @GetMapping("getInfo/{id}")
     public ChatHistory getInfo(@PathVariable Long id) {
+        checkLogicalTableReadable();
         return chatHistoryService.getById(id);
     }
 
@@ -98,9 +113,26 @@ public class ChatHistoryController {
      */
     @GetMapping("page")
     public Page<ChatHistory> page(Page<ChatHistory> page) {
+        checkLogicalTableReadable();
         return chatHistoryService.page(page);
     }
 
+    /**
+     * 通用的增删改接口只操作逻辑表 chat_history，双写和分表期间会漏掉分表，直接拒绝
+     */
+    private void checkLogicalTableWritable() {
+        ThrowUtils.throwIf(chatHistoryShardRouter.getMode() != Mode.SINGLE, ErrorCode.OPERATION_ERROR,
+                "对话历史已分表，不支持该操作");
+    }
+
+    /**
+     * 通用的查询接口只读逻辑表 chat_history，分表后数据不在逻辑表中，直接拒绝（请使用按应用或管理员分页查询）
+     */
+    private void checkLogicalTableReadable() {
+        ThrowUtils.throwIf(chatHistoryShardRouter.getMode() == Mode.SHARDED, ErrorCode.OPERATION_ERROR,
+                "对话历史已分表，请使用按应用查询或管理员分页查询");
+    }
+
     /**
      * 分页查询某个应用的对话历史（游标查询）
      *
@@ -120,6 +152,25 @@ public class ChatHistoryController {
         return ResultUtils.success(result);
     }
 
+    /**
+     * 游标分页查询某个应用的对话历史（按 createTime、id 定位，不统计总数）
+     *
+     * @param appId    应用ID
+     * @param pageSize 页面大小
+     * @param cursor   上一页返回的 nextCursor，为空时查询最新一页
+     * @param request  请求
+     * @return 本页记录、下一页游标和是否还有更多
+     */
+    @GetMapping("/app/{appId}/cursor")
+    public BaseResponse<ChatHistoryCursorPageVO> listAppChatHistoryByCursor(@PathVariable Long appId,
+                                                                             @RequestParam(defaultValue = "10") int pageSize,
+                                                                             @RequestParam(required = false) String cursor,
+                                                                             HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        ChatHistoryCursorPageVO result = chatHistoryService.listAppChatHistoryByCursor(appId, pageSize, cursor, loginUser);
+        return ResultUtils.success(result);
+    }
+
     /**
      * 管理员分页查询所有对话历史
      *
@@ -130,13 +181,44 @@ public class ChatHistoryController {
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
     public BaseResponse<Page<ChatHistory>> listAllChatHistoryByPageForAdmin(@RequestBody ChatHistoryQueryRequest chatHistoryQueryRequest) {
         ThrowUtils.throwIf(chatHistoryQueryRequest == null, ErrorCode.PARAMS_ERROR);
-        long pageNum = chatHistoryQueryRequest.getPageNum();
-        long pageSize = chatHistoryQueryRequest.getPageSize();
-        // 查询数据
-        QueryWrapper queryWrapper = chatHistoryService.getQueryWrapper(chatHistoryQueryRequest);
-        Page<ChatHistory> result = chatHistoryService.page(Page.of(pageNum, pageSize), queryWrapper);
+        // 分表后按 appId 路由到一张分表，没有 appId 时在所有分表上并行查询并合并
+        Page<ChatHistory> result = chatHistoryService.listAllChatHistoryByPageForAdmin(chatHistoryQueryRequest);
         return ResultUtils.success(result);
     }
 
+    /**
+     * 管理员启动分表回填，把单表中的历史对话复制到分表（需要先切换到 DUAL_WRITE 模式）
+     *
+     * @return 回填进度
+     */
+    @PostMapping("/admin/shard/backfill")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<ChatHistoryShardBackfillVO> startShardBackfill() {
+        return ResultUtils.success(chatHistoryShardBackfill.start());
+    }
+
+    /**
+     * 管理员中止分表回填，再次启动时从中断处继续
+     *
+     * @return 回填进度
+     */
+    @PostMapping("/admin/shard/backfill/stop")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<ChatHistoryShardBackfillVO> stopShardBackfill() {
+        chatHistoryShardBackfill.stop();
+        return ResultUtils.success(chatHistoryShardBackfill.getProgress());
+    }
+
+    /**
+     * 管理员查看分表回填进度
+     *
+     * @return 回填进度
+     */
+    @GetMapping("/admin/shard/backfill")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<ChatHistoryShardBackfillVO> getShardBackfillProgress() {
+        return ResultUtils.success(chatHistoryShardBackfill.getProgress());
+    }
+
 
 }
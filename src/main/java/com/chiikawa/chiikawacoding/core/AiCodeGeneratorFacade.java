@@ -6,10 +6,12 @@ import com.chiikawa.chiikawacoding.ai.AiCodeGeneratorServiceFactory;
 import com.chiikawa.chiikawacoding.ai.model.HtmlCodeResult;
 import com.chiikawa.chiikawacoding.ai.model.MultiFileCodeResult;
 import com.chiikawa.chiikawacoding.ai.model.message.AiResponseMessage;
+import com.chiikawa.chiikawacoding.ai.model.message.CodeSavedMessage;
 import com.chiikawa.chiikawacoding.ai.model.message.ToolExecutedMessage;
 import com.chiikawa.chiikawacoding.ai.model.message.ToolRequestMessage;
-import com.chiikawa.chiikawacoding.core.parser.CodeParserExecutor;
+import com.chiikawa.chiikawacoding.core.cache.GenerationResultCache;
 import com.chiikawa.chiikawacoding.core.saver.CodeFileSaverExecutor;
+import com.chiikawa.chiikawacoding.core.saver.StreamingCodeFileSaver;
 import com.chiikawa.chiikawacoding.exception.BusinessException;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
 import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
@@ -24,8 +26,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.File;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
 
 /**
  * AI 代码生成外观类，组合生成和保存功能
@@ -37,6 +43,12 @@ public class AiCodeGeneratorFacade {
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
+    @Resource
+    private ThreadPoolExecutor codeSaveExecutor;
+
+    @Resource
+    private GenerationResultCache generationResultCache;
+
     /**
      * 统一入口：根据类型生成并保存代码（使用 appId）
      *
@@ -45,11 +57,11 @@ public class AiCodeGeneratorFacade {
      * @return 保存的目录
      */
     public File generateAndSaveCode(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
-        // 根据 appId 获取对应的 AI 服务实例
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId);
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
+        // 根据生成类型获取对应的 AI 服务实例，对话记忆按 appId 区分
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(codeGenTypeEnum);
         return switch (codeGenTypeEnum) {
             case HTML -> {
                 HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
@@ -74,19 +86,36 @@ public class AiCodeGeneratorFacade {
      * @param appId           应用 ID
      */
     public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
-        // 根据 appId 获取对应的 AI 服务实例
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
+        return generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, codeSavedMessage -> {
+        });
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码（流式，使用 appId）
+     * HTML、MULTI_FILE 模式下流在文件全部写入后才结束，结束前通过 onSaved 回调保存结果
+     *
+     * @param userMessage     用户提示词
+     * @param codeGenTypeEnum 生成类型
+     * @param appId           应用 ID
+     * @param onSaved         保存结果回调
+     */
+    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                                  Consumer<CodeSavedMessage> onSaved) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
+        // 根据生成类型获取对应的 AI 服务实例，对话记忆按 appId 区分
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(codeGenTypeEnum);
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                Flux<String> codeStream = generationResultCache.getOrGenerate(appId, CodeGenTypeEnum.HTML, userMessage,
+                        () -> aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage));
+                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId, onSaved);
             }
             case MULTI_FILE -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                Flux<String> codeStream = generationResultCache.getOrGenerate(appId, CodeGenTypeEnum.MULTI_FILE, userMessage,
+                        () -> aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage));
+                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId, onSaved);
             }
             case VUE_PROJECT -> {
                 TokenStream codeStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
@@ -106,26 +135,29 @@ public class AiCodeGeneratorFacade {
      * @param codeStream  代码流
      * @param codeGenType 代码生成类型
      * @param appId       应用 ID
+     * @param onSaved     保存结果回调
      * @return 流式响应
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
-        StringBuilder codeBuilder = new StringBuilder();
-        return codeStream.doOnNext(chunk -> {
-            // 实时收集代码片段
-            codeBuilder.append(chunk);
-//            log.info("实时代码片段：{}", chunk);
-        }).doOnComplete(() -> {
-            // 流式返回完成后保存代码
-            try {
-                String completeCode = codeBuilder.toString();
-                // 使用执行器解析代码
-                Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                // 使用执行器保存代码
-                File savedDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
-                log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
-            } catch (Exception e) {
-                log.error("保存失败: {}", e.getMessage());
-            }
+    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId,
+                                           Consumer<CodeSavedMessage> onSaved) {
+        // 边接收边解析，代码块闭合即提交到保存线程池写入文件，不再缓存完整响应
+        return Flux.defer(() -> {
+            StreamingCodeFileSaver codeFileSaver = new StreamingCodeFileSaver(codeGenType, appId, codeSaveExecutor);
+            // 流式返回完成后等待文件全部写入，再通知保存结果
+            Mono<String> saveResult = Mono.defer(() -> Mono.fromFuture(codeFileSaver.finish()))
+                    .map(savedDir -> {
+                        log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
+                        return new CodeSavedMessage(savedDir.getName(), codeFileSaver.getSavedFiles().size());
+                    })
+                    .onErrorResume(e -> {
+                        log.error("保存失败: {}", e.getMessage());
+                        return Mono.just(new CodeSavedMessage("代码保存失败：" + e.getMessage()));
+                    })
+                    .doOnNext(onSaved)
+                    // 后续的对话历史入库、SSE 写出不占用保存线程
+                    .publishOn(Schedulers.boundedElastic())
+                    .then(Mono.empty());
+            return codeStream.doOnNext(codeFileSaver::append).concatWith(saveResult);
         });
     }
 
@@ -156,8 +188,10 @@ public class AiCodeGeneratorFacade {
                     .onError((Throwable error) -> {
                         error.printStackTrace();
                         sink.error(error);
-                    })
-                    .start();
+                    });
+            // 客户端断开时中止大模型调用和后续的工具调用
+            sink.onCancel(tokenStream::cancel);
+            tokenStream.start();
         });
     }
 
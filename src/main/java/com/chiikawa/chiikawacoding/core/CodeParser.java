@@ -2,9 +2,10 @@ package com.chiikawa.chiikawacoding.core;
 
 import com.chiikawa.chiikawacoding.ai.model.HtmlCodeResult;
 import com.chiikawa.chiikawacoding.ai.model.MultiFileCodeResult;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlock;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlockExtractor;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * 代码解析器
@@ -14,10 +15,6 @@ import java.util.regex.Pattern;
  */
 public class CodeParser {
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-
     /**
      * 解析 HTML 单文件代码
      */
@@ -40,9 +37,10 @@ public class CodeParser {
     public static MultiFileCodeResult parseMultiFileCode(String codeContent) {
         MultiFileCodeResult result = new MultiFileCodeResult();
         // 提取各类代码
-        String htmlCode = extractCodeByPattern(codeContent, HTML_CODE_PATTERN);
-        String cssCode = extractCodeByPattern(codeContent, CSS_CODE_PATTERN);
-        String jsCode = extractCodeByPattern(codeContent, JS_CODE_PATTERN);
+        List<CodeBlock> codeBlocks = CodeBlockExtractor.extract(codeContent);
+        String htmlCode = CodeBlockExtractor.findFirstCode(codeBlocks, "html");
+        String cssCode = CodeBlockExtractor.findFirstCode(codeBlocks, "css");
+        String jsCode = CodeBlockExtractor.findFirstCode(codeBlocks, "js", "javascript");
         // 设置HTML代码
         if (htmlCode != null && !htmlCode.trim().isEmpty()) {
             result.setHtmlCode(htmlCode.trim());
@@ -65,25 +63,6 @@ public class CodeParser {
      * @return HTML代码
      */
     private static String extractHtmlCode(String content) {
-        Matcher matcher = HTML_CODE_PATTERN.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
-
-    /**
-     * 根据正则模式提取代码
-     *
-     * @param content 原始内容
-     * @param pattern 正则模式
-     * @return 提取的代码
-     */
-    private static String extractCodeByPattern(String content, Pattern pattern) {
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
+        return CodeBlockExtractor.findFirstCode(CodeBlockExtractor.extract(content), "html");
     }
 }
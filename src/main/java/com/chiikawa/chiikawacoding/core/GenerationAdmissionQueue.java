@@ -0,0 +1,302 @@
+package com.chiikawa.chiikawacoding.core;
+
+import com.chiikawa.chiikawacoding.ai.model.message.QueuePositionMessage;
+import com.chiikawa.chiikawacoding.ai.model.message.StreamMessage;
+import com.chiikawa.chiikawacoding.config.GenerationAdmissionConfig;
+import com.chiikawa.chiikawacoding.exception.ErrorCode;
+import com.chiikawa.chiikawacoding.exception.RetryLaterException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 代码生成准入队列
+ * 在大模型流式调用之前限制全局和单用户的并发数，超出的请求进入有界等待队列，
+ * 不同用户之间按轮转顺序放行（最久没有被放行的用户优先），避免单个用户的大量请求占满所有名额
+ * <p>
+ * 等待期间通过 {@link QueuePositionMessage} 推送排队位置，队列已满时生成流以 {@link RetryLaterException} 结束
+ */
+@Component
+@Slf4j
+public class GenerationAdmissionQueue {
+
+    @Resource
+    private GenerationAdmissionConfig generationAdmissionConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 各用户的等待队列（按首次排队顺序）
+     */
+    private final Map<Long, Deque<Ticket>> waitingQueues = new LinkedHashMap<>();
+
+    /**
+     * 各用户正在进行的生成数
+     */
+    private final Map<Long, Integer> userRunningCounts = new HashMap<>();
+
+    /**
+     * 各用户最近一次被放行的序号，序号越小越优先，实现用户间轮转；
+     * 用户没有排队和进行中的请求时移除
+     */
+    private final Map<Long, Long> userLastAdmitted = new HashMap<>();
+
+    private long admitSequence;
+
+    private volatile int runningCount;
+
+    private volatile int waitingCount;
+
+    /**
+     * 排队位置快照版本，用于丢弃过期的位置推送
+     */
+    private long snapshotVersion;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("generation.admission.running", this, queue -> queue.runningCount)
+                .description("正在进行的生成数")
+                .register(meterRegistry);
+        Gauge.builder("generation.admission.waiting", this, queue -> queue.waitingCount)
+                .description("排队等待的生成数")
+                .register(meterRegistry);
+        rejectedCounter = meterRegistry.counter("generation.admission.rejected");
+    }
+
+    /**
+     * 提交一次生成：有空闲名额时直接开始，否则排队等待并推送排队位置
+     * 订阅时才入队（没有订阅的流不占用名额），队列已满时流在第一条消息之前以 {@link RetryLaterException} 结束
+     *
+     * @param userId     用户 ID
+     * @param generation 启动生成（获得名额后订阅）
+     * @return 排队位置消息 + 生成流
+     */
+    public Flux<StreamMessage> submit(Long userId, Supplier<Flux<StreamMessage>> generation) {
+        return Flux.defer(() -> {
+            Ticket ticket = enqueue(userId);
+            return ticket.positionSink.asFlux()
+                    .concatWith(Flux.defer(generation))
+                    .doFinally(signalType -> release(ticket));
+        });
+    }
+
+    private Ticket enqueue(Long userId) {
+        Ticket ticket = new Ticket(userId);
+        Dispatch dispatch;
+        synchronized (this) {
+            waitingQueues.computeIfAbsent(userId, key -> new ArrayDeque<>()).addLast(ticket);
+            waitingCount++;
+            List<Ticket> admitted = admitRunnable();
+            if (ticket.state == TicketState.WAITING && waitingCount > generationAdmissionConfig.getMaxQueueSize()) {
+                removeWaiting(ticket);
+                ticket.state = TicketState.DONE;
+                rejectedCounter.increment();
+                cleanUpUser(userId);
+                throw new RetryLaterException(ErrorCode.SERVICE_BUSY, "当前生成请求过多，请稍后重试",
+                        generationAdmissionConfig.getRetryAfterSeconds());
+            }
+            dispatch = new Dispatch(admitted, snapshotPositions());
+        }
+        dispatch.publish();
+        return ticket;
+    }
+
+    /**
+     * 生成结束（或等待中被取消）时释放名额，并放行后续请求
+     */
+    private void release(Ticket ticket) {
+        Dispatch dispatch;
+        synchronized (this) {
+            if (ticket.state == TicketState.WAITING) {
+                removeWaiting(ticket);
+            } else if (ticket.state == TicketState.RUNNING) {
+                runningCount--;
+                userRunningCounts.merge(ticket.userId, -1, Integer::sum);
+                userRunningCounts.remove(ticket.userId, 0);
+            }
+            ticket.state = TicketState.DONE;
+            cleanUpUser(ticket.userId);
+            dispatch = new Dispatch(admitRunnable(), snapshotPositions());
+        }
+        dispatch.publish();
+    }
+
+    /**
+     * 按轮转顺序放行所有可以开始的请求（需持有锁）
+     */
+    private List<Ticket> admitRunnable() {
+        List<Ticket> admitted = new ArrayList<>();
+        while (runningCount < generationAdmissionConfig.getMaxConcurrent()) {
+            // 可以开始的用户中，选最久没有被放行的
+            Long nextUserId = null;
+            for (Long userId : waitingQueues.keySet()) {
+                if (userRunningCounts.getOrDefault(userId, 0) < generationAdmissionConfig.getMaxConcurrentPerUser()
+                        && (nextUserId == null || lastAdmitted(userId) < lastAdmitted(nextUserId))) {
+                    nextUserId = userId;
+                }
+            }
+            if (nextUserId == null) {
+                break;
+            }
+            Deque<Ticket> userQueue = waitingQueues.get(nextUserId);
+            Ticket ticket = userQueue.pollFirst();
+            if (userQueue.isEmpty()) {
+                waitingQueues.remove(nextUserId);
+            }
+            waitingCount--;
+            runningCount++;
+            userRunningCounts.merge(nextUserId, 1, Integer::sum);
+            userLastAdmitted.put(nextUserId, ++admitSequence);
+            ticket.state = TicketState.RUNNING;
+            admitted.add(ticket);
+        }
+        return admitted;
+    }
+
+    private long lastAdmitted(Long userId) {
+        return userLastAdmitted.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * 用户没有排队和进行中的请求时，清除其轮转记录
+     */
+    private void cleanUpUser(Long userId) {
+        if (!waitingQueues.containsKey(userId) && !userRunningCounts.containsKey(userId)) {
+            userLastAdmitted.remove(userId);
+        }
+    }
+
+    private void removeWaiting(Ticket ticket) {
+        Deque<Ticket> userQueue = waitingQueues.get(ticket.userId);
+        if (userQueue != null && userQueue.remove(ticket)) {
+            waitingCount--;
+            if (userQueue.isEmpty()) {
+                waitingQueues.remove(ticket.userId);
+            }
+        }
+    }
+
+    /**
+     * 按轮转顺序计算所有等待请求的排队位置（需持有锁）
+     * 不考虑单用户并发限制，是预计位置
+     */
+    private Map<Ticket, Integer> snapshotPositions() {
+        Map<Ticket, Integer> positions = new LinkedHashMap<>();
+        List<Iterator<Ticket>> userIterators = waitingQueues.keySet().stream()
+                .sorted(Comparator.comparingLong(this::lastAdmitted))
+                .map(userId -> waitingQueues.get(userId).iterator())
+                .collect(Collectors.toCollection(ArrayList::new));
+        int position = 0;
+        while (!userIterators.isEmpty()) {
+            Iterator<Iterator<Ticket>> round = userIterators.iterator();
+            while (round.hasNext()) {
+                Iterator<Ticket> userIterator = round.next();
+                if (userIterator.hasNext()) {
+                    positions.put(userIterator.next(), ++position);
+                } else {
+                    round.remove();
+                }
+            }
+        }
+        snapshotVersion++;
+        return positions;
+    }
+
+    /**
+     * 一次状态变更后需要推送的通知，在锁外发送，避免在锁内启动生成；
+     * 获得名额的请求在 boundedElastic 线程上开始生成，不占用释放名额的线程（通常是刚结束的生成流）
+     */
+    private class Dispatch {
+
+        private final List<Ticket> admitted;
+
+        private final Map<Ticket, Integer> positions;
+
+        private final long version;
+
+        private Dispatch(List<Ticket> admitted, Map<Ticket, Integer> positions) {
+            this.admitted = admitted;
+            this.positions = positions;
+            this.version = snapshotVersion;
+        }
+
+        private void publish() {
+            for (Ticket ticket : admitted) {
+                ticket.admit();
+            }
+            int queueSize = positions.size();
+            positions.forEach((ticket, position) -> ticket.updatePosition(version, position, queueSize));
+        }
+    }
+
+    private enum TicketState {
+        WAITING, RUNNING, DONE
+    }
+
+    /**
+     * 排队凭证，状态只在持有队列锁时修改
+     */
+    private static class Ticket {
+
+        private final Long userId;
+
+        /**
+         * 排队位置推送，获得名额后结束
+         */
+        private final Sinks.Many<StreamMessage> positionSink = Sinks.many().replay().latest();
+
+        private TicketState state = TicketState.WAITING;
+
+        private long publishedVersion;
+
+        private int publishedPosition;
+
+        private boolean admitted;
+
+        private Ticket(Long userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * 标记为已放行后不再推送排队位置，位置流的结束（即生成的订阅）交给 boundedElastic 线程
+         */
+        private synchronized void admit() {
+            admitted = true;
+            Schedulers.boundedElastic().schedule(() ->
+                    positionSink.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1))));
+        }
+
+        private synchronized void updatePosition(long version, int position, int queueSize) {
+            if (admitted || version <= publishedVersion || position == publishedPosition) {
+                return;
+            }
+            publishedVersion = version;
+            publishedPosition = position;
+            positionSink.emitNext(new QueuePositionMessage(position, queueSize),
+                    Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        }
+    }
+}
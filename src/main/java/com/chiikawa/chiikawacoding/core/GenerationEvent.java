@@ -0,0 +1,36 @@
+package com.chiikawa.chiikawacoding.core;
+
+import com.chiikawa.chiikawacoding.ai.model.message.StreamMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 生成事件：带序号的流式消息
+ * 事件 ID 为 生成 ID-序号，作为 SSE 的 id 发送，客户端重连时通过 Last-Event-ID 回传
+ */
+@Data
+@AllArgsConstructor
+public class GenerationEvent {
+
+    /**
+     * 生成 ID，每次生成唯一且递增
+     */
+    private String generationId;
+
+    /**
+     * 事件序号，同一次生成内从 0 开始递增
+     */
+    private long sequence;
+
+    /**
+     * 流式消息
+     */
+    private StreamMessage message;
+
+    /**
+     * 事件 ID
+     */
+    public String getEventId() {
+        return generationId + "-" + sequence;
+    }
+}
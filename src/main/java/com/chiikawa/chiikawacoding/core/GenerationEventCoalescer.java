@@ -0,0 +1,124 @@
+package com.chiikawa.chiikawacoding.core;
+
+import com.chiikawa.chiikawacoding.ai.model.message.AiResponseMessage;
+import com.chiikawa.chiikawacoding.config.SseCoalesceConfig;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成事件合并
+ * 大模型每个 token 对应一个 AI 响应片段，逐个作为 SSE 事件发送时每个事件都要序列化一次并写出一次，
+ * 这里把时间窗口内的连续片段合并为一个事件：
+ * 达到最长合并时间或最大字符数时发送，其他类型的消息（保存完成、排队位置等）和流结束时立即发送
+ * <p>
+ * 合并后的事件使用最后一个片段的事件 ID，断线续传从合并事件之后继续
+ */
+@Component
+public class GenerationEventCoalescer {
+
+    @Resource
+    private SseCoalesceConfig sseCoalesceConfig;
+
+    /**
+     * 合并生成事件流
+     *
+     * @param events 生成事件流
+     * @return 合并后的生成事件流
+     */
+    public Flux<GenerationEvent> coalesce(Flux<GenerationEvent> events) {
+        if (!sseCoalesceConfig.isEnabled()) {
+            return events;
+        }
+        return Flux.create(sink -> {
+            Batch batch = new Batch(sink, Schedulers.parallel());
+            Disposable upstream = events.subscribe(batch::add, batch::error, batch::complete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                batch.cancelTimer();
+            });
+        });
+    }
+
+    /**
+     * 正在合并的片段，上游信号和定时发送可能在不同线程，状态修改都持有锁
+     */
+    private class Batch {
+
+        private final FluxSink<GenerationEvent> sink;
+
+        private final Scheduler scheduler;
+
+        private final StringBuilder pending = new StringBuilder();
+
+        /**
+         * 已合并的最后一个片段
+         */
+        private GenerationEvent lastEvent;
+
+        private Disposable timer;
+
+        private Batch(FluxSink<GenerationEvent> sink, Scheduler scheduler) {
+            this.sink = sink;
+            this.scheduler = scheduler;
+        }
+
+        private synchronized void add(GenerationEvent event) {
+            if (!(event.getMessage() instanceof AiResponseMessage aiResponseMessage)) {
+                flush();
+                sink.next(event);
+                return;
+            }
+            pending.append(aiResponseMessage.getData());
+            lastEvent = event;
+            if (pending.length() >= sseCoalesceConfig.getMaxChars()) {
+                flush();
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::flushOnTimer,
+                        sseCoalesceConfig.getMaxDelay().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void error(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        private synchronized void complete() {
+            flush();
+            sink.complete();
+        }
+
+        private synchronized void flushOnTimer() {
+            timer = null;
+            flush();
+        }
+
+        private synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        /**
+         * 发送已合并的片段（需持有锁）
+         */
+        private void flush() {
+            cancelTimer();
+            if (lastEvent == null) {
+                return;
+            }
+            sink.next(new GenerationEvent(lastEvent.getGenerationId(), lastEvent.getSequence(),
+                    new AiResponseMessage(pending.toString())));
+            pending.setLength(0);
+            lastEvent = null;
+        }
+    }
+}
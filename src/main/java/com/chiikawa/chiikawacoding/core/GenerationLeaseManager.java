@@ -0,0 +1,188 @@
+package com.chiikawa.chiikawacoding.core;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import com.chiikawa.chiikawacoding.ai.model.message.StreamMessage;
+import com.chiikawa.chiikawacoding.ai.model.message.StreamResetMessage;
+import com.chiikawa.chiikawacoding.config.GenerationResumeConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 应用生成租约管理
+ * 同一个应用同一时间只允许一次生成：多开标签页、前端重试等重复请求不再重新调用大模型，
+ * 而是订阅正在进行的生成流，重放已产生的消息，避免浪费 token 和并发写同一个输出目录
+ * <p>
+ * 生成事件带有递增的事件 ID 并保留在有界的重放缓冲区中，网络抖动断开后客户端带 Last-Event-ID 重连，
+ * 从下一条事件继续推送，不需要重新生成；需要的事件已被挤出缓冲区时发送 {@link StreamResetMessage}，不会跳过缺失的事件
+ */
+@Component
+@Slf4j
+public class GenerationLeaseManager {
+
+    @Resource
+    private GenerationResumeConfig generationResumeConfig;
+
+    /**
+     * 正在进行的生成：appId -> 共享生成
+     */
+    private final Map<Long, SharedGeneration> inFlightGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * 已结束的生成：appId -> 共享生成，在续传窗口内保留事件供重连的客户端补齐
+     */
+    private Cache<Long, SharedGeneration> finishedGenerations;
+
+    @PostConstruct
+    public void init() {
+        finishedGenerations = Caffeine.newBuilder()
+                .expireAfterWrite(generationResumeConfig.getResumeWindow())
+                .build();
+    }
+
+    /**
+     * 获取应用的生成流：没有正在进行的生成时启动新的生成，否则订阅正在进行的生成
+     *
+     * @param appId      应用 ID
+     * @param generation 创建生成流（仅在获得租约时调用，抛出异常时不占用租约）
+     * @return 生成事件流，订阅时才获取租约，没有订阅的流不会占用应用
+     */
+    public Flux<GenerationEvent> acquire(Long appId, Supplier<Flux<StreamMessage>> generation) {
+        return Flux.defer(() -> {
+            SharedGeneration inFlight = inFlightGenerations.get(appId);
+            if (inFlight != null) {
+                log.info("应用正在生成中，复用正在进行的生成流，appId: {}", appId);
+                return inFlight.eventsAfter(-1);
+            }
+            return inFlightGenerations.computeIfAbsent(appId, id -> createSharedGeneration(id, generation))
+                    .eventsAfter(-1);
+        });
+    }
+
+    /**
+     * 断线续传：从 Last-Event-ID 的下一条事件继续推送
+     *
+     * @param appId       应用 ID
+     * @param lastEventId 客户端收到的最后一个事件 ID
+     * @return 剩余的生成事件流，生成不存在、已过续传窗口或已取消时只有一条重置消息
+     */
+    public Flux<GenerationEvent> resume(Long appId, String lastEventId) {
+        List<String> parts = StrUtil.split(lastEventId, '-');
+        if (parts.size() != 2 || !NumberUtil.isLong(parts.get(1))) {
+            log.info("无法解析的 Last-Event-ID，appId: {}, lastEventId: {}", appId, lastEventId);
+            return Flux.just(reset(lastEventId, -1, "无法续传生成"));
+        }
+        String generationId = parts.get(0);
+        long lastSequence = Long.parseLong(parts.get(1));
+        SharedGeneration sharedGeneration = inFlightGenerations.get(appId);
+        if (sharedGeneration == null || !sharedGeneration.generationId.equals(generationId)) {
+            sharedGeneration = finishedGenerations.getIfPresent(appId);
+        }
+        if (sharedGeneration == null || !sharedGeneration.generationId.equals(generationId)) {
+            log.info("生成不存在或已超出续传窗口，appId: {}, lastEventId: {}", appId, lastEventId);
+            return Flux.just(reset(generationId, lastSequence, "生成已结束且超出续传时间，中断期间的内容已无法补齐"));
+        }
+        log.info("客户端重连，续传生成事件，appId: {}, lastEventId: {}", appId, lastEventId);
+        if (sharedGeneration.cancelled) {
+            // 取消后共享流已断开，缓冲区不再可用
+            return Flux.just(reset(generationId, lastSequence, "生成已取消"));
+        }
+        return sharedGeneration.eventsAfter(lastSequence);
+    }
+
+    /**
+     * 重置事件，沿用客户端最后收到的事件 ID，再次重连时得到同样的结果
+     */
+    private static GenerationEvent reset(String generationId, long lastSequence, String reason) {
+        return new GenerationEvent(generationId, lastSequence, new StreamResetMessage(reason));
+    }
+
+    /**
+     * 应用是否正在生成
+     */
+    public boolean isGenerating(Long appId) {
+        return inFlightGenerations.containsKey(appId);
+    }
+
+    /**
+     * 创建共享生成：第一个订阅者到来时启动，之后的订阅者重放缓冲区中的事件；
+     * 所有订阅者都断开且续传窗口内没有重连时取消生成（中止大模型调用），生成结束（完成、出错或取消）后释放租约
+     */
+    private SharedGeneration createSharedGeneration(Long appId, Supplier<Flux<StreamMessage>> generation) {
+        Flux<StreamMessage> generationFlux = generation.get();
+        SharedGeneration sharedGeneration = new SharedGeneration(IdUtil.getSnowflakeNextIdStr());
+        // 生成只能启动一次：取消后才拿到共享流的订阅者不会重新触发生成
+        AtomicBoolean started = new AtomicBoolean();
+        sharedGeneration.events = Flux.defer(() -> started.compareAndSet(false, true)
+                        ? generationFlux : Flux.<StreamMessage>empty())
+                .index((sequence, message) -> new GenerationEvent(sharedGeneration.generationId, sequence, message))
+                .doOnTerminate(() -> finish(appId, sharedGeneration))
+                .doOnCancel(() -> {
+                    sharedGeneration.cancelled = true;
+                    finish(appId, sharedGeneration);
+                })
+                .doFinally(signalType -> {
+                    inFlightGenerations.remove(appId, sharedGeneration);
+                    log.info("应用生成结束，释放生成租约，appId: {}, signal: {}", appId, signalType);
+                })
+                .replay(generationResumeConfig.getBufferSize())
+                .refCount(1, generationResumeConfig.getResumeWindow());
+        return sharedGeneration;
+    }
+
+    /**
+     * 生成结束后转入已结束的生成，在续传窗口内仍可补齐事件（重放缓冲区在上游结束后仍保留）
+     */
+    private void finish(Long appId, SharedGeneration sharedGeneration) {
+        finishedGenerations.put(appId, sharedGeneration);
+    }
+
+    /**
+     * 一次共享生成，事件只保存在共享流的重放缓冲区中
+     */
+    private static class SharedGeneration {
+
+        private final String generationId;
+
+        private Flux<GenerationEvent> events;
+
+        /**
+         * 是否因所有订阅者断开而取消
+         */
+        private volatile boolean cancelled;
+
+        private SharedGeneration(String generationId) {
+            this.generationId = generationId;
+        }
+
+        /**
+         * 序号大于 lastSequence 的事件
+         * 重放缓冲区中最早的事件已经晚于 lastSequence 的下一条时，中间的事件无法补齐，只发送重置消息
+         */
+        private Flux<GenerationEvent> eventsAfter(long lastSequence) {
+            long expectedSequence = lastSequence + 1;
+            return events.filter(event -> event.getSequence() >= expectedSequence)
+                    .switchOnFirst((signal, remaining) -> {
+                        GenerationEvent first = signal.get();
+                        if (first != null && first.getSequence() > expectedSequence) {
+                            log.warn("生成事件已超出重放缓冲区，无法续传，generationId: {}, 需要: {}, 最早: {}",
+                                    generationId, expectedSequence, first.getSequence());
+                            return Flux.just(reset(generationId, lastSequence, "生成内容过长，中断期间的内容已无法补齐"));
+                        }
+                        return remaining;
+                    });
+        }
+    }
+}
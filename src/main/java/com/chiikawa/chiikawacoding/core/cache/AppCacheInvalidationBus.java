@@ -0,0 +1,97 @@
+package com.chiikawa.chiikawacoding.core.cache;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * 应用缓存失效总线
+ * 应用被删除、对话历史被清空或被管理员修改时，通过 Redis 发布订阅通知所有实例清除该应用的本地缓存，
+ * 本地缓存可以使用较长的过期时间而不会读到过期的上下文
+ * <p>
+ * 持有本地缓存的组件通过 {@link #addListener(LongConsumer)} 注册清除逻辑
+ */
+@Component
+@Slf4j
+public class AppCacheInvalidationBus {
+
+    private static final String CHANNEL = "app:cache:invalidate";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 当前实例 ID，用于忽略自己发出的消息（本地已清除）
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) ->
+                onMessage(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 注册缓存清除逻辑
+     *
+     * @param listener 参数为 appId
+     */
+    public void addListener(LongConsumer listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 清除本实例的缓存并通知其他实例
+     * 通知失败（Redis 不可用）时只记录日志，其他实例的缓存按过期时间失效
+     *
+     * @param appId 应用 ID
+     */
+    public void invalidate(long appId) {
+        invalidateLocal(appId);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + ":" + appId);
+        } catch (Exception e) {
+            log.warn("发布缓存失效通知失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    private void onMessage(String body) {
+        List<String> parts = StrUtil.split(body, ':');
+        if (parts.size() != 2 || !NumberUtil.isLong(parts.get(1))) {
+            log.warn("忽略无法解析的缓存失效通知: {}", body);
+            return;
+        }
+        if (nodeId.equals(parts.get(0))) {
+            return;
+        }
+        invalidateLocal(Long.parseLong(parts.get(1)));
+    }
+
+    private void invalidateLocal(long appId) {
+        log.info("清除应用本地缓存，appId: {}", appId);
+        for (LongConsumer listener : listeners) {
+            try {
+                listener.accept(appId);
+            } catch (Exception e) {
+                log.error("清除应用本地缓存失败，appId: {}", appId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.chiikawa.chiikawacoding.core.cache;
+
+import cn.hutool.core.util.NumberUtil;
+import com.chiikawa.chiikawacoding.config.AppCountCacheConfig;
+import com.chiikawa.chiikawacoding.model.entity.App;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 应用数量缓存
+ * 计数保存在 Redis 中，多个实例共享；创建、删除应用时对已存在的计数增量调整，
+ * 计数不存在或过期时由分页查询重新统计，因此是近似值（并发统计和调整时可能有少量偏差，过期后纠正）
+ * <p>
+ * Redis 不可用时只记录日志，分页查询回退为执行 COUNT
+ */
+@Component
+@Slf4j
+public class AppCountCache {
+
+    private static final String KEY_PREFIX = "app:count:";
+
+    private static final DefaultRedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        ADJUST_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/app_count_adjust.lua")));
+        ADJUST_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private AppCountCacheConfig appCountCacheConfig;
+
+    /**
+     * 用户的应用数
+     */
+    public String userKey(Long userId) {
+        return KEY_PREFIX + "user:" + userId;
+    }
+
+    /**
+     * 精选应用数
+     */
+    public String featuredKey() {
+        return KEY_PREFIX + "featured";
+    }
+
+    /**
+     * 应用总数
+     */
+    public String allKey() {
+        return KEY_PREFIX + "all";
+    }
+
+    public boolean isEnabled() {
+        return appCountCacheConfig.isEnabled();
+    }
+
+    /**
+     * 读取计数
+     *
+     * @param key 计数键
+     * @return 计数，不存在或读取失败时返回 null
+     */
+    public Long get(String key) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(key);
+            return NumberUtil.isLong(value) ? Long.parseLong(value) : null;
+        } catch (Exception e) {
+            log.warn("读取应用数量缓存失败，key: {}, error: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入重新统计的计数
+     */
+    public void put(String key, long count) {
+        try {
+            stringRedisTemplate.opsForValue().set(key, String.valueOf(count), appCountCacheConfig.getTtl());
+        } catch (Exception e) {
+            log.warn("写入应用数量缓存失败，key: {}, error: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 应用创建或删除后调整相关计数
+     *
+     * @param app   应用（需要 userId、priority）
+     * @param delta 1 表示创建，-1 表示删除
+     */
+    public void adjust(App app, long delta) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(List.of(allKey(), userKey(app.getUserId())));
+        if (app.getPriority() != null && app.getPriority() > 0) {
+            keys.add(featuredKey());
+        }
+        // 每个键单独执行脚本，不同计数键在 Redis Cluster 中不在同一槽位（一次脚本访问多个槽位会报 CROSSSLOT）
+        for (String key : keys) {
+            try {
+                stringRedisTemplate.execute(ADJUST_SCRIPT, List.of(key), String.valueOf(delta));
+            } catch (Exception e) {
+                log.warn("调整应用数量缓存失败，appId: {}, key: {}, error: {}", app.getId(), key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 清除计数，下次查询时重新统计（精选状态变化时使用）
+     */
+    public void invalidate(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("清除应用数量缓存失败，key: {}, error: {}", key, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.chiikawa.chiikawacoding.core.cache;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.chiikawa.chiikawacoding.ai.AppChatMemoryProvider;
+import com.chiikawa.chiikawacoding.config.GenerationCacheConfig;
+import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 生成结果缓存（内容寻址）
+ * 缓存键为生成类型、系统提示词版本、规范化后的用户消息和当前对话记忆摘要的哈希，
+ * 克隆精选应用、模板创建、重试等相同请求命中后直接重放缓存的流式片段，不再调用大模型
+ * <p>
+ * 只缓存 HTML、MULTI_FILE 模式：Vue 工程模式通过工具调用写文件，无法只靠文本重放
+ */
+@Component
+@Slf4j
+public class GenerationResultCache {
+
+    /**
+     * 与 AiCodeGeneratorService 上 @SystemMessage 引用的提示词资源保持一致
+     */
+    private static final Map<CodeGenTypeEnum, String> SYSTEM_PROMPT_RESOURCES = Map.of(
+            CodeGenTypeEnum.HTML, "prompt/codegen-html-system-prompt.txt",
+            CodeGenTypeEnum.MULTI_FILE, "prompt/codegen-multi-file-system-prompt.txt"
+    );
+
+    @Resource
+    private Cache<String, List<String>> generationResultCache;
+
+    @Resource
+    private GenerationCacheConfig generationCacheConfig;
+
+    @Resource
+    private AppChatMemoryProvider appChatMemoryProvider;
+
+    /**
+     * 系统提示词版本（内容摘要），按生成类型懒加载
+     */
+    private final Map<CodeGenTypeEnum, String> promptVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 获取生成流：命中缓存时重放缓存片段，否则调用大模型并在流正常结束后写入缓存
+     *
+     * @param appId       应用 ID
+     * @param codeGenType 代码生成类型
+     * @param userMessage 用户消息
+     * @param generator   调用大模型的生成流
+     * @return 流式片段
+     */
+    public Flux<String> getOrGenerate(Long appId, CodeGenTypeEnum codeGenType, String userMessage,
+                                      Supplier<Flux<String>> generator) {
+        if (!generationCacheConfig.isEnabled() || !SYSTEM_PROMPT_RESOURCES.containsKey(codeGenType)) {
+            return generator.get();
+        }
+        // 订阅时才读取对话记忆计算缓存键
+        return Flux.defer(() -> {
+            String cacheKey = buildCacheKey(appId, codeGenType, userMessage);
+            List<String> cachedChunks = generationResultCache.getIfPresent(cacheKey);
+            if (cachedChunks != null) {
+                log.info("命中生成结果缓存，appId: {}, 缓存键: {}", appId, cacheKey);
+                return Flux.fromIterable(cachedChunks)
+                        .doOnComplete(() -> appendToChatMemory(appId, userMessage, String.join("", cachedChunks)));
+            }
+            List<String> chunks = new ArrayList<>();
+            return generator.get()
+                    .doOnNext(chunks::add)
+                    .doOnComplete(() -> {
+                        // 只缓存完整的生成结果，出错或取消的流不会执行到这里
+                        if (!chunks.isEmpty()) {
+                            generationResultCache.put(cacheKey, List.copyOf(chunks));
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 构建缓存键
+     */
+    private String buildCacheKey(Long appId, CodeGenTypeEnum codeGenType, String userMessage) {
+        String content = String.join("\n",
+                codeGenType.getValue(),
+                getPromptVersion(codeGenType),
+                normalizeUserMessage(userMessage),
+                getChatMemoryDigest(appId));
+        return DigestUtil.sha256Hex(content);
+    }
+
+    /**
+     * 规范化用户消息：去除首尾空白，连续空白合并为一个空格
+     */
+    private String normalizeUserMessage(String userMessage) {
+        return StrUtil.trim(userMessage).replaceAll("\\s+", " ");
+    }
+
+    private String getPromptVersion(CodeGenTypeEnum codeGenType) {
+        return promptVersions.computeIfAbsent(codeGenType,
+                type -> DigestUtil.sha256Hex(ResourceUtil.readUtf8Str(SYSTEM_PROMPT_RESOURCES.get(type))));
+    }
+
+    /**
+     * 当前对话记忆摘要，历史上下文不同的请求不共享缓存
+     * 系统消息已由提示词版本区分，不参与摘要（缓存重放的对话记忆中没有系统消息）
+     * 通过记忆提供者读取，保证首次访问的应用已从数据库加载历史对话
+     */
+    private String getChatMemoryDigest(Long appId) {
+        List<ChatMessage> messages = appChatMemoryProvider.get(appId).messages().stream()
+                .filter(message -> !(message instanceof SystemMessage))
+                .toList();
+        return DigestUtil.sha256Hex(ChatMessageSerializer.messagesToJson(messages));
+    }
+
+    /**
+     * 命中缓存时没有调用大模型，手动补充本轮对话到记忆中，保证后续对话的上下文完整
+     */
+    private void appendToChatMemory(Long appId, String userMessage, String aiResponse) {
+        ChatMemory chatMemory = appChatMemoryProvider.get(appId);
+        chatMemory.add(UserMessage.from(userMessage));
+        chatMemory.add(AiMessage.from(aiResponse));
+    }
+}
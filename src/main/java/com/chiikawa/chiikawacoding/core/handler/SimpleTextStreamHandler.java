@@ -42,6 +42,11 @@ public class SimpleTextStreamHandler {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
                     chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                })
+                .doOnCancel(() -> {
+                    // 客户端断开导致生成取消，记录已生成的部分内容
+                    String aiResponse = aiResponseBuilder + "\n\n[生成已取消]";
+                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 });
     }
 }
@@ -0,0 +1,188 @@
+package com.chiikawa.chiikawacoding.core.history;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import com.chiikawa.chiikawacoding.config.ChatHistoryCompressionConfig;
+import com.chiikawa.chiikawacoding.mapper.ChatHistoryMapper;
+import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
+import com.mybatisflex.core.logicdelete.LogicDeleteManager;
+import com.mybatisflex.core.query.QueryWrapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 对话历史压缩存储
+ * 写入时把超过阈值的消息转换为压缩存储的形式（完整内容在 messageCompressed 中，message 只保留开头的明文供管理员搜索），
+ * 读取时由实体按需解压；启动后在后台逐批压缩已有的长消息（包括已逻辑删除的）
+ */
+@Component
+@Slf4j
+public class ChatHistoryCompressor {
+
+    @Resource
+    private ChatHistoryCompressionConfig chatHistoryCompressionConfig;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ChatHistoryShardRouter chatHistoryShardRouter;
+
+    private volatile boolean running;
+
+    /**
+     * 转换为写入数据库的形式，不修改原对象（原对象可能仍在异步写入队列中被读取）
+     *
+     * @param chatHistory 对话消息
+     * @return 需要压缩时返回压缩后的副本，否则返回原对象
+     */
+    public ChatHistory forStorage(ChatHistory chatHistory) {
+        byte[] compressed = compress(chatHistory.getMessage());
+        if (compressed == null) {
+            return chatHistory;
+        }
+        return toStorageForm(chatHistory, compressed, chatHistoryCompressionConfig.getSearchablePrefixChars());
+    }
+
+    /**
+     * 压缩存储的形式：message 只保留明文前缀，写入时不会被解压
+     *
+     * @param chatHistory  对话消息
+     * @param compressed   压缩数据
+     * @param prefixChars  明文前缀长度
+     * @return 副本
+     */
+    public static ChatHistory toStorageForm(ChatHistory chatHistory, byte[] compressed, int prefixChars) {
+        ChatHistory stored = BeanUtil.copyProperties(chatHistory, ChatHistory.class);
+        stored.setMessage(searchablePrefix(chatHistory.getMessage(), prefixChars));
+        stored.setMessageCompressed(compressed);
+        stored.setMessageResolved(true);
+        return stored;
+    }
+
+    /**
+     * 消息开头的明文，不截断代理对（utf8mb4 列不接受不完整的字符）
+     */
+    private static String searchablePrefix(String message, int prefixChars) {
+        if (message.length() <= prefixChars) {
+            return message;
+        }
+        int end = Math.max(prefixChars, 0);
+        if (end > 0 && Character.isHighSurrogate(message.charAt(end - 1))) {
+            end--;
+        }
+        return message.substring(0, end);
+    }
+
+    public List<ChatHistory> forStorage(List<ChatHistory> chatHistoryList) {
+        return chatHistoryList.stream().map(this::forStorage).toList();
+    }
+
+    /**
+     * 压缩消息
+     *
+     * @return 压缩数据，未启用、消息未超过阈值或压缩后没有变小时返回 null
+     */
+    private byte[] compress(String message) {
+        if (!chatHistoryCompressionConfig.isEnabled() || message == null
+                || message.length() <= chatHistoryCompressionConfig.getThresholdChars()) {
+            return null;
+        }
+        byte[] compressed = ChatHistoryMessageCodec.encode(message);
+        return compressed.length < message.getBytes(StandardCharsets.UTF_8).length ? compressed : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        if (!chatHistoryCompressionConfig.isEnabled() || !chatHistoryCompressionConfig.isMigrationEnabled()) {
+            return;
+        }
+        running = true;
+        ThreadUtil.newThread(this::migrate, "chat-history-compression", true).start();
+    }
+
+    @PreDestroy
+    public void stopMigration() {
+        running = false;
+    }
+
+    /**
+     * 依次压缩保存数据的每张物理表（双写期间包括单表和分表）
+     */
+    private void migrate() {
+        Counter migratedCounter = meterRegistry.counter("chat.history.compression.migrated");
+        for (String table : chatHistoryShardRouter.writeTables()) {
+            if (!running) {
+                break;
+            }
+            chatHistoryShardRouter.onTable(table, () -> {
+                migrateTable(table, migratedCounter);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 按主键顺序逐批压缩未压缩的长消息，已完成的消息不会再被查出，重启后可以从头继续
+     */
+    private void migrateTable(String table, Counter migratedCounter) {
+        long lastId = 0;
+        long migrated = 0;
+        try {
+            while (running) {
+                List<ChatHistory> batch = selectUncompressed(lastId);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (ChatHistory row : batch) {
+                    lastId = row.getId();
+                    byte[] compressed = compress(row.getMessage());
+                    if (compressed != null && updateCompressed(row.getId(), row.getMessage(), compressed)) {
+                        migrated++;
+                        migratedCounter.increment();
+                    }
+                }
+                ThreadUtil.sleep(chatHistoryCompressionConfig.getMigrationInterval().toMillis());
+            }
+            log.info("对话历史压缩迁移{}，表: {}，本次压缩 {} 条", running ? "完成" : "中止", table, migrated);
+        } catch (Exception e) {
+            log.error("对话历史压缩迁移失败，表: {}，已压缩 {} 条，下次启动时继续", table, migrated, e);
+        }
+    }
+
+    private List<ChatHistory> selectUncompressed(long afterId) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .select(ChatHistory::getId, ChatHistory::getMessage)
+                .gt(ChatHistory::getId, afterId)
+                .isNull(ChatHistory::getMessageCompressed)
+                .and("char_length(message) > ?", chatHistoryCompressionConfig.getThresholdChars())
+                .orderBy(ChatHistory::getId, true)
+                .limit(chatHistoryCompressionConfig.getMigrationBatchSize());
+        return LogicDeleteManager.execWithoutLogicDelete(() -> chatHistoryMapper.selectListByQuery(queryWrapper));
+    }
+
+    /**
+     * 只更新消息内容两列，条件中带上 messageCompressed 为空，与并发的迁移互不覆盖
+     */
+    private boolean updateCompressed(Long id, String message, byte[] compressed) {
+        ChatHistory update = new ChatHistory();
+        update.setMessage(message);
+        ChatHistory stored = toStorageForm(update, compressed, chatHistoryCompressionConfig.getSearchablePrefixChars());
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistory::getId, id)
+                .isNull(ChatHistory::getMessageCompressed);
+        return LogicDeleteManager.execWithoutLogicDelete(() -> chatHistoryMapper.updateByQuery(stored, queryWrapper)) > 0;
+    }
+}
@@ -0,0 +1,76 @@
+package com.chiikawa.chiikawacoding.core.history;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 对话消息压缩编解码
+ * 压缩结果的第一个字节是编码标记，之后是压缩数据，以后更换压缩算法时旧数据仍可按标记解码
+ */
+public final class ChatHistoryMessageCodec {
+
+    /**
+     * zlib（Deflate + Adler-32 校验），UTF-8 文本
+     */
+    public static final byte CODEC_DEFLATE = 1;
+
+    private ChatHistoryMessageCodec() {
+    }
+
+    /**
+     * 压缩消息
+     *
+     * @param message 消息
+     * @return 编码标记 + 压缩数据
+     */
+    public static byte[] encode(String message) {
+        byte[] input = message.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 4 + 16);
+            output.write(CODEC_DEFLATE);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解压消息
+     *
+     * @param data 编码标记 + 压缩数据
+     * @return 消息
+     */
+    public static String decode(byte[] data) {
+        if (data.length == 0 || data[0] != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("未知的消息编码: " + (data.length == 0 ? "空" : data[0]));
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("压缩数据不完整");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("压缩数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.chiikawa.chiikawacoding.core.history;
+
+import cn.hutool.core.thread.ThreadUtil;
+import com.chiikawa.chiikawacoding.config.ChatHistoryShardingConfig;
+import com.chiikawa.chiikawacoding.config.ChatHistoryShardingConfig.Mode;
+import com.chiikawa.chiikawacoding.exception.ErrorCode;
+import com.chiikawa.chiikawacoding.exception.ThrowUtils;
+import com.chiikawa.chiikawacoding.mapper.ChatHistoryMapper;
+import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
+import com.chiikawa.chiikawacoding.model.vo.ChatHistoryShardBackfillVO;
+import com.mybatisflex.core.logicdelete.LogicDeleteManager;
+import com.mybatisflex.core.query.QueryWrapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对话历史分表回填（在线迁移）
+ * 双写开启后，在后台按主键顺序逐批把单表 chat_history 中的历史记录原样复制到各自的分表，
+ * 使用 insert ignore，与双写写入的记录和重复执行互不影响；全部完成后即可切换到 SHARDED 模式
+ */
+@Component
+@Slf4j
+public class ChatHistoryShardBackfill {
+
+    @Resource
+    private ChatHistoryShardingConfig chatHistoryShardingConfig;
+
+    @Resource
+    private ChatHistoryShardRouter chatHistoryShardRouter;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    private final ChatHistoryShardBackfillVO progress = new ChatHistoryShardBackfillVO();
+
+    private volatile boolean running;
+
+    /**
+     * 回填线程，中止后要等它结束才能重新启动
+     */
+    private Thread worker;
+
+    public ChatHistoryShardBackfill() {
+        progress.setStatus("IDLE");
+    }
+
+    /**
+     * 启动回填，从上次中止的位置继续（上次已完成时从头开始）
+     */
+    public synchronized ChatHistoryShardBackfillVO start() {
+        ThrowUtils.throwIf(chatHistoryShardingConfig.getMode() == Mode.SINGLE, ErrorCode.OPERATION_ERROR,
+                "未开启分表，请先切换到 DUAL_WRITE 模式");
+        ThrowUtils.throwIf(worker != null && worker.isAlive(), ErrorCode.OPERATION_ERROR, "回填正在进行中");
+        if ("COMPLETED".equals(progress.getStatus())) {
+            progress.setScanned(0);
+            progress.setCopied(0);
+            progress.setLastId(0);
+        }
+        progress.setStatus("RUNNING");
+        progress.setStartTime(LocalDateTime.now());
+        progress.setFinishTime(null);
+        progress.setErrorMessage(null);
+        running = true;
+        worker = ThreadUtil.newThread(this::backfill, "chat-history-shard-backfill", true);
+        worker.start();
+        return getProgress();
+    }
+
+    /**
+     * 中止回填，当前批次完成后停止
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    public synchronized ChatHistoryShardBackfillVO getProgress() {
+        ChatHistoryShardBackfillVO snapshot = new ChatHistoryShardBackfillVO();
+        snapshot.setStatus(progress.getStatus());
+        snapshot.setScanned(progress.getScanned());
+        snapshot.setCopied(progress.getCopied());
+        snapshot.setLastId(progress.getLastId());
+        snapshot.setStartTime(progress.getStartTime());
+        snapshot.setFinishTime(progress.getFinishTime());
+        snapshot.setErrorMessage(progress.getErrorMessage());
+        return snapshot;
+    }
+
+    private void backfill() {
+        String status = "STOPPED";
+        String errorMessage = null;
+        try {
+            long lastId = getProgress().getLastId();
+            while (running) {
+                List<ChatHistory> batch = selectBatch(lastId);
+                if (batch.isEmpty()) {
+                    status = "COMPLETED";
+                    break;
+                }
+                lastId = batch.getLast().getId();
+                int copied = copyBatch(batch);
+                synchronized (this) {
+                    progress.setScanned(progress.getScanned() + batch.size());
+                    progress.setCopied(progress.getCopied() + copied);
+                    progress.setLastId(lastId);
+                }
+                ThreadUtil.sleep(chatHistoryShardingConfig.getBackfillInterval().toMillis());
+            }
+        } catch (Exception e) {
+            log.error("对话历史分表回填失败，可以重新启动从中断处继续", e);
+            status = "FAILED";
+            errorMessage = e.getMessage();
+        } finally {
+            synchronized (this) {
+                running = false;
+                progress.setStatus(status);
+                progress.setErrorMessage(errorMessage);
+                progress.setFinishTime(LocalDateTime.now());
+                log.info("对话历史分表回填结束，状态: {}，扫描 {} 条，复制 {} 条，lastId: {}",
+                        status, progress.getScanned(), progress.getCopied(), progress.getLastId());
+            }
+        }
+    }
+
+    /**
+     * 按主键顺序读取单表的下一批记录（只取 id 和 appId，包括已逻辑删除的）
+     */
+    private List<ChatHistory> selectBatch(long afterId) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .select(ChatHistory::getId, ChatHistory::getAppId)
+                .gt(ChatHistory::getId, afterId)
+                .orderBy(ChatHistory::getId, true)
+                .limit(chatHistoryShardingConfig.getBackfillBatchSize());
+        return chatHistoryShardRouter.onTable(ChatHistoryShardRouter.LOGICAL_TABLE, () ->
+                LogicDeleteManager.execWithoutLogicDelete(() -> chatHistoryMapper.selectListByQuery(queryWrapper)));
+    }
+
+    /**
+     * 按分表分组后逐表复制
+     *
+     * @return 新复制的行数
+     */
+    private int copyBatch(List<ChatHistory> batch) {
+        Map<String, List<Long>> idsByShard = new LinkedHashMap<>();
+        for (ChatHistory row : batch) {
+            idsByShard.computeIfAbsent(chatHistoryShardRouter.shardTable(row.getAppId()), key -> new ArrayList<>())
+                    .add(row.getId());
+        }
+        int copied = 0;
+        for (Map.Entry<String, List<Long>> entry : idsByShard.entrySet()) {
+            copied += chatHistoryMapper.insertIgnoreCopy(ChatHistoryShardRouter.LOGICAL_TABLE, entry.getKey(), entry.getValue());
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,227 @@
+package com.chiikawa.chiikawacoding.core.history;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.chiikawa.chiikawacoding.config.ChatHistoryShardingConfig;
+import com.chiikawa.chiikawacoding.config.ChatHistoryShardingConfig.Mode;
+import com.mybatisflex.core.table.TableManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 对话历史分表路由
+ * 通过 MyBatis-Flex 的表名映射（线程内生效）把对逻辑表 chat_history 的读写路由到 appId 所在的物理表，
+ * 不带 appId 的查询在所有物理表上并行执行后由调用方合并
+ * <p>
+ * XML 中的 SQL 不经过表名映射，需要把 {@link #currentTable()} 作为参数传入
+ */
+@Component
+public class ChatHistoryShardRouter {
+
+    public static final String LOGICAL_TABLE = "chat_history";
+
+    /**
+     * 当前线程映射到的物理表（TableManager 在线程没有设置过映射时读取会抛出空指针，由这里单独记录）
+     */
+    private static final ThreadLocal<String> CURRENT_TABLE = new ThreadLocal<>();
+
+    @Resource
+    private ChatHistoryShardingConfig chatHistoryShardingConfig;
+
+    private List<String> shardTables;
+
+    private ThreadPoolExecutor scatterExecutor;
+
+    @PostConstruct
+    public void init() {
+        List<String> tables = new ArrayList<>();
+        for (int i = 0; i < chatHistoryShardingConfig.getShardCount(); i++) {
+            tables.add(String.format("%s_%02d", LOGICAL_TABLE, i));
+        }
+        shardTables = List.copyOf(tables);
+        int poolSize = chatHistoryShardingConfig.getScatterPoolSize();
+        scatterExecutor = new ThreadPoolExecutor(poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                ThreadFactoryBuilder.create().setNamePrefix("chat-history-shard-").setDaemon(true).build());
+        scatterExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scatterExecutor.shutdown();
+    }
+
+    public Mode getMode() {
+        return chatHistoryShardingConfig.getMode();
+    }
+
+    /**
+     * appId 所在的分表，哈希前先打散，避免雪花 ID 低位集中导致分布不均
+     */
+    public String shardTable(Long appId) {
+        return shardTables.get(shardIndex(appId, shardTables.size()));
+    }
+
+    public static int shardIndex(long appId, int shardCount) {
+        long hash = appId;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb34fe1a85ec2L;
+        hash ^= hash >>> 33;
+        return (int) Math.floorMod(hash, (long) shardCount);
+    }
+
+    public List<String> shardTables() {
+        return shardTables;
+    }
+
+    /**
+     * 读取 appId 的对话历史所用的物理表
+     */
+    public String readTable(Long appId) {
+        return getMode() == Mode.SHARDED ? shardTable(appId) : LOGICAL_TABLE;
+    }
+
+    /**
+     * 写入 appId 的对话历史需要写的物理表（第一张为读表）
+     */
+    public List<String> writeTables(Long appId) {
+        return switch (getMode()) {
+            case SINGLE -> List.of(LOGICAL_TABLE);
+            case DUAL_WRITE -> List.of(LOGICAL_TABLE, shardTable(appId));
+            case SHARDED -> List.of(shardTable(appId));
+        };
+    }
+
+    /**
+     * 跨应用查询需要读的全部物理表
+     */
+    public List<String> readTables() {
+        return getMode() == Mode.SHARDED ? shardTables : List.of(LOGICAL_TABLE);
+    }
+
+    /**
+     * 保存数据的全部物理表（双写期间包括单表和分表）
+     */
+    public List<String> writeTables() {
+        return switch (getMode()) {
+            case SINGLE -> List.of(LOGICAL_TABLE);
+            case DUAL_WRITE -> {
+                List<String> tables = new ArrayList<>(shardTables.size() + 1);
+                tables.add(LOGICAL_TABLE);
+                tables.addAll(shardTables);
+                yield tables;
+            }
+            case SHARDED -> shardTables;
+        };
+    }
+
+    /**
+     * 在 appId 的读表上执行
+     */
+    public <T> T read(Long appId, Supplier<T> action) {
+        return onTable(readTable(appId), action);
+    }
+
+    /**
+     * 在 appId 的所有写表上依次执行，返回读表上的结果
+     */
+    public <T> T write(Long appId, Supplier<T> action) {
+        List<String> tables = writeTables(appId);
+        T result = onTable(tables.getFirst(), action);
+        for (String table : tables.subList(1, tables.size())) {
+            onTable(table, action);
+        }
+        return result;
+    }
+
+    /**
+     * 在指定物理表上执行：对逻辑表的操作映射到该表，结束后恢复原来的映射
+     */
+    public <T> T onTable(String table, Supplier<T> action) {
+        String previous = CURRENT_TABLE.get();
+        CURRENT_TABLE.set(table);
+        TableManager.setHintTableMapping(LOGICAL_TABLE, table);
+        try {
+            return action.get();
+        } finally {
+            // 映射为空时 MyBatis-Flex 使用逻辑表名
+            TableManager.setHintTableMapping(LOGICAL_TABLE, previous);
+            if (previous == null) {
+                CURRENT_TABLE.remove();
+            } else {
+                CURRENT_TABLE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前线程映射到的物理表，供 XML 中的 SQL 使用
+     */
+    public String currentTable() {
+        String table = CURRENT_TABLE.get();
+        return table != null ? table : LOGICAL_TABLE;
+    }
+
+    /**
+     * 按写表分组：双写期间同一条记录同时出现在单表和分表的分组中
+     */
+    public <T> Map<String, List<T>> groupByWriteTable(Collection<T> items, Function<T, Long> appIdOf) {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            for (String table : writeTables(appIdOf.apply(item))) {
+                groups.computeIfAbsent(table, key -> new ArrayList<>()).add(item);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 按读表分组
+     */
+    public <T> Map<String, List<T>> groupByReadTable(Collection<T> items, Function<T, Long> appIdOf) {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(readTable(appIdOf.apply(item)), key -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    /**
+     * 在多张物理表上并行执行（scatter），按表的顺序返回各表的结果（gather），任一张表失败时抛出其异常
+     */
+    public <T> List<T> scatter(Collection<String> tables, Function<String, T> action) {
+        if (tables.size() == 1) {
+            String table = tables.iterator().next();
+            return Collections.singletonList(onTable(table, () -> action.apply(table)));
+        }
+        List<CompletableFuture<T>> futures = tables.stream()
+                .map(table -> CompletableFuture.supplyAsync(() -> onTable(table, () -> action.apply(table)), scatterExecutor))
+                .toList();
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
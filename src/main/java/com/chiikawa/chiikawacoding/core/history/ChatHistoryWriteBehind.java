@@ -0,0 +1,546 @@
+package com.chiikawa.chiikawacoding.core.history;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.chiikawa.chiikawacoding.config.ChatHistoryWriteBehindConfig;
+import com.chiikawa.chiikawacoding.exception.BusinessException;
+import com.chiikawa.chiikawacoding.exception.ErrorCode;
+import com.chiikawa.chiikawacoding.mapper.ChatHistoryMapper;
+import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
+import com.mybatisflex.core.logicdelete.LogicDeleteManager;
+import com.mybatisflex.core.query.QueryWrapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 对话历史异步批量写入
+ * 消息先追加到本地日志（落盘后返回）并进入有界队列，后台线程按条数或时间攒批，用多行插入写入数据库；
+ * 进程崩溃后启动时从日志重放尚未落库的消息（按 ID 去重，跳过日志中记录为已丢弃的消息）
+ * <p>
+ * 尚未落库的消息可以通过 {@link #pendingFor(Long)} 查询，读取对话历史时合并；尚未落库的消息只在接收写入的实例内存中，
+ * 读己之写只在同一实例上成立，其他实例要等批量插入完成（通常在 flushInterval 内）后才能读到；
+ * 消息的 ID 和创建时间在入队时确定（创建时间截断到秒，与数据库 datetime 精度一致）
+ */
+@Component
+@Slf4j
+public class ChatHistoryWriteBehind {
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * 丢弃记录的日志行字段：被丢弃的消息 ID，重放时跳过
+     */
+    private static final String DISCARD_IDS = "discardIds";
+
+    private static final String DISCARD_APP_ID = "discardAppId";
+
+    @Resource
+    private ChatHistoryWriteBehindConfig chatHistoryWriteBehindConfig;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ChatHistoryCompressor chatHistoryCompressor;
+
+    @Resource
+    private ChatHistoryShardRouter chatHistoryShardRouter;
+
+    /**
+     * 尚未落库的消息：id -> 待写入记录
+     */
+    private final Map<Long, PendingRecord> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 追加日志锁，保护当前分段的写入和切换
+     */
+    private final Object journalLock = new Object();
+
+    /**
+     * 写库锁，删除应用历史时与正在进行的一次插入互斥，避免已删除的消息被重新插入；重试等待期间不持有
+     */
+    private final Object flushLock = new Object();
+
+    private BlockingQueue<PendingRecord> queue;
+
+    private Segment activeSegment;
+
+    private int segmentSequence;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    private Counter overflowCounter;
+
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!chatHistoryWriteBehindConfig.isEnabled()) {
+            return;
+        }
+        Path journalDir = Paths.get(chatHistoryWriteBehindConfig.getJournalDir());
+        Files.createDirectories(journalDir);
+        recover(journalDir);
+        activeSegment = openSegment(journalDir);
+        queue = new ArrayBlockingQueue<>(chatHistoryWriteBehindConfig.getQueueCapacity());
+        overflowCounter = meterRegistry.counter("chat.history.write.overflow");
+        flushTimer = Timer.builder("chat.history.write.flush")
+                .description("对话历史批量插入耗时")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.write.pending", pending, Map::size)
+                .description("尚未落库的对话消息数")
+                .register(meterRegistry);
+        running = true;
+        flusher = ThreadUtil.newThread(this::flushLoop, "chat-history-flusher", true);
+        flusher.start();
+    }
+
+    /**
+     * 是否启用异步写入
+     */
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * 写入一条对话消息：追加日志后入队，日志写入失败或队列已满时同步插入
+     * 同步插入只尝试一次，失败时抛出异常（与关闭异步写入时一致），不会在请求线程上等待数据库恢复
+     *
+     * @param chatHistory 对话消息（ID、创建时间在此处确定）
+     */
+    public void append(ChatHistory chatHistory) {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        chatHistory.setId(IdUtil.getSnowflakeNextId());
+        chatHistory.setCreateTime(now);
+        chatHistory.setUpdateTime(now);
+        chatHistory.setIsDelete(0);
+        PendingRecord record;
+        try {
+            record = writeJournal(chatHistory);
+        } catch (IOException e) {
+            log.error("对话历史追加日志写入失败，改为同步插入，appId: {}", chatHistory.getAppId(), e);
+            ChatHistory stored = chatHistoryCompressor.forStorage(chatHistory);
+            chatHistoryShardRouter.write(chatHistory.getAppId(), () -> chatHistoryMapper.insert(stored));
+            return;
+        }
+        pending.put(chatHistory.getId(), record);
+        if (!queue.offer(record)) {
+            overflowCounter.increment();
+            try {
+                insertOnce(List.of(record), false);
+            } catch (Exception e) {
+                log.error("队列已满且同步插入对话历史失败，appId: {}", chatHistory.getAppId(), e);
+                // 调用方收到失败，日志中的这条消息不再重放
+                discardRecords(chatHistory.getAppId(), removePending(record.chatHistory.getAppId(),
+                        pendingRecord -> pendingRecord == record));
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存对话历史失败");
+            }
+        }
+    }
+
+    /**
+     * 应用尚未落库的对话消息
+     * 消息在插入提交后才移出，调用方需先取得待写入的消息再查询数据表，合并时按 ID 去重
+     *
+     * @param appId 应用 ID
+     * @return 待写入的消息（无序）
+     */
+    public List<ChatHistory> pendingFor(Long appId) {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        return pending.values().stream()
+                .map(record -> record.chatHistory)
+                .filter(chatHistory -> appId.equals(chatHistory.getAppId()))
+                .toList();
+    }
+
+    /**
+     * 丢弃应用尚未落库的消息（删除应用对话历史时调用），并在日志中记录，崩溃后重放时跳过这些消息
+     * 只等待正在进行的一次插入完成，不等待失败后的重试
+     *
+     * @param appId 应用 ID
+     */
+    public void discard(Long appId) {
+        if (!running) {
+            return;
+        }
+        discardRecords(appId, removePending(appId, record -> true));
+    }
+
+    private List<PendingRecord> removePending(Long appId, Predicate<PendingRecord> filter) {
+        List<PendingRecord> removed = new ArrayList<>();
+        synchronized (flushLock) {
+            pending.values().removeIf(record -> {
+                if (appId.equals(record.chatHistory.getAppId()) && filter.test(record)) {
+                    removed.add(record);
+                    return true;
+                }
+                return false;
+            });
+        }
+        return removed;
+    }
+
+    /**
+     * 记录丢弃并释放消息所在的分段
+     * 丢弃记录所在的分段要保留到被丢弃消息所在的分段都删除之后，否则重放旧分段时会重新插入这些消息
+     */
+    private void discardRecords(Long appId, List<PendingRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        JSONObject tombstone = new JSONObject();
+        tombstone.set(DISCARD_APP_ID, appId);
+        tombstone.set(DISCARD_IDS, records.stream().map(record -> record.chatHistory.getId()).toList());
+        try {
+            synchronized (journalLock) {
+                Segment segment = writeLine(tombstone.toString());
+                for (PendingRecord record : records) {
+                    Segment recordSegment = record.segment;
+                    if (recordSegment != segment && !recordSegment.deleted
+                            && !recordSegment.tombstoneSegments.contains(segment)) {
+                        recordSegment.tombstoneSegments.add(segment);
+                        segment.unpersisted.incrementAndGet();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("对话历史丢弃记录写入日志失败，崩溃后可能重放已丢弃的消息，appId: {}", appId, e);
+        }
+        for (PendingRecord record : records) {
+            release(record.segment);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        synchronized (journalLock) {
+            closeSegment(activeSegment);
+            if (activeSegment.unpersisted.get() == 0) {
+                deleteSegment(activeSegment);
+            }
+        }
+    }
+
+    /**
+     * 后台攒批：取到第一条后最多等待 flushInterval 或攒满 batchSize 条再插入，停止时清空队列后退出
+     */
+    private void flushLoop() {
+        long flushIntervalNanos = chatHistoryWriteBehindConfig.getFlushInterval().toNanos();
+        int batchSize = chatHistoryWriteBehindConfig.getBatchSize();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingRecord> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flushBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("对话历史批量写入异常", e);
+            }
+        }
+    }
+
+    /**
+     * 后台批量插入，失败时按间隔重试直到成功（停止时放弃，由下次启动从日志重放）
+     * 重试等待期间不持有写库锁，数据库不可用时删除应用历史不会被阻塞
+     */
+    private void flushBatch(List<PendingRecord> batch) {
+        boolean retry = false;
+        while (true) {
+            try {
+                insertOnce(batch, retry);
+                return;
+            } catch (Exception e) {
+                log.error("对话历史批量插入失败，{} 条，稍后重试", batch.size(), e);
+                if (!running) {
+                    return;
+                }
+                retry = true;
+                ThreadUtil.sleep(chatHistoryWriteBehindConfig.getRetryInterval().toMillis());
+            }
+        }
+    }
+
+    /**
+     * 插入一次：只插入仍未落库（没有被丢弃）的消息，重试时排除已经插入成功的消息，避免重复插入
+     */
+    private void insertOnce(List<PendingRecord> batch, boolean checkExisting) {
+        synchronized (flushLock) {
+            List<PendingRecord> records = batch.stream()
+                    .filter(record -> pending.containsKey(record.chatHistory.getId()))
+                    .toList();
+            if (records.isEmpty()) {
+                return;
+            }
+            List<ChatHistory> rows = records.stream().map(record -> record.chatHistory).toList();
+            flushTimer.record(() -> insertMissing(rows, checkExisting));
+            for (PendingRecord record : records) {
+                pending.remove(record.chatHistory.getId());
+                release(record.segment);
+            }
+        }
+    }
+
+    /**
+     * 按应用所在的物理表分组写入，双写期间同一批记录在单表和分表中各写一次
+     */
+    private void insertMissing(List<ChatHistory> rows, boolean checkExisting) {
+        chatHistoryShardRouter.groupByWriteTable(rows, ChatHistory::getAppId)
+                .forEach((table, tableRows) -> chatHistoryShardRouter.onTable(table, () -> {
+                    insertMissingOnTable(tableRows, checkExisting);
+                    return null;
+                }));
+    }
+
+    private void insertMissingOnTable(List<ChatHistory> rows, boolean checkExisting) {
+        List<ChatHistory> missing = rows;
+        if (checkExisting) {
+            List<Long> ids = rows.stream().map(ChatHistory::getId).toList();
+            // 包括已被逻辑删除的记录
+            Set<Long> existing = new HashSet<>(LogicDeleteManager.execWithoutLogicDelete(() ->
+                    chatHistoryMapper.selectObjectListByQueryAs(
+                            QueryWrapper.create().select("id").from(ChatHistoryShardRouter.LOGICAL_TABLE).in("id", ids), Long.class)));
+            missing = rows.stream().filter(row -> !existing.contains(row.getId())).toList();
+        }
+        if (!missing.isEmpty()) {
+            chatHistoryMapper.insertBatch(chatHistoryCompressor.forStorage(missing));
+        }
+    }
+
+    /**
+     * 启动时重放日志中尚未落库的消息，完成后删除日志
+     * 先读取全部分段，丢弃记录可能在之后的分段中，被丢弃的消息不重放；
+     * 崩溃时写了一半的最后一行无法解析，直接忽略（该消息的调用方没有收到成功返回）
+     */
+    private void recover(Path journalDir) throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segments = files.filter(path -> path.getFileName().toString().endsWith(JOURNAL_SUFFIX))
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        }
+        List<ChatHistory> rows = new ArrayList<>();
+        Set<Long> discardedIds = new HashSet<>();
+        for (Path segment : segments) {
+            for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                try {
+                    JSONObject json = JSONUtil.parseObj(line);
+                    if (json.containsKey(DISCARD_IDS)) {
+                        discardedIds.addAll(json.getJSONArray(DISCARD_IDS).toList(Long.class));
+                    } else {
+                        rows.add(json.toBean(ChatHistory.class));
+                    }
+                } catch (Exception e) {
+                    log.warn("忽略无法解析的对话历史日志行，文件: {}", segment.getFileName());
+                }
+            }
+        }
+        List<ChatHistory> replayRows = rows.stream()
+                .filter(row -> !discardedIds.contains(row.getId()))
+                .toList();
+        int batchSize = chatHistoryWriteBehindConfig.getBatchSize();
+        for (int from = 0; from < replayRows.size(); from += batchSize) {
+            insertMissing(replayRows.subList(from, Math.min(replayRows.size(), from + batchSize)), true);
+        }
+        for (Path segment : segments) {
+            Files.delete(segment);
+        }
+        if (!segments.isEmpty()) {
+            log.info("已重放对话历史日志 {} 个分段，重放 {} 条，跳过已丢弃的 {} 条",
+                    segments.size(), replayRows.size(), rows.size() - replayRows.size());
+        }
+    }
+
+    private PendingRecord writeJournal(ChatHistory chatHistory) throws IOException {
+        String line = JSONUtil.toJsonStr(chatHistory);
+        synchronized (journalLock) {
+            Segment segment = writeLine(line);
+            segment.unpersisted.incrementAndGet();
+            return new PendingRecord(chatHistory, segment);
+        }
+    }
+
+    /**
+     * 追加一行到当前分段并落盘，超过分段大小时先切换分段（需持有 journalLock）
+     *
+     * @return 写入的分段
+     */
+    private Segment writeLine(String content) throws IOException {
+        byte[] line = (content + "\n").getBytes(StandardCharsets.UTF_8);
+        if (activeSegment.bytes + line.length > chatHistoryWriteBehindConfig.getJournalSegmentBytes()
+                && activeSegment.bytes > 0) {
+            Segment previous = activeSegment;
+            activeSegment = openSegment(previous.path.getParent());
+            closeSegment(previous);
+            if (previous.unpersisted.get() == 0) {
+                deleteSegment(previous);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            activeSegment.channel.write(buffer);
+        }
+        activeSegment.channel.force(false);
+        activeSegment.bytes += line.length;
+        return activeSegment;
+    }
+
+    /**
+     * 消息已落库（或被丢弃），分段中的消息全部落库且已不是当前分段时删除
+     */
+    private void release(Segment segment) {
+        if (segment.unpersisted.decrementAndGet() == 0) {
+            synchronized (journalLock) {
+                if (segment != activeSegment && segment.unpersisted.get() == 0) {
+                    deleteSegment(segment);
+                }
+            }
+        }
+    }
+
+    private Segment openSegment(Path journalDir) throws IOException {
+        String fileName = String.format("%d-%06d%s", System.currentTimeMillis(), segmentSequence++, JOURNAL_SUFFIX);
+        Path path = journalDir.resolve(fileName);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        return new Segment(path, channel);
+    }
+
+    private void closeSegment(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("关闭对话历史日志失败: {}", segment.path, e);
+        }
+    }
+
+    /**
+     * 删除分段（需持有 journalLock），之后不再需要为它保留的丢弃记录分段随之释放
+     */
+    private void deleteSegment(Segment segment) {
+        if (segment.deleted) {
+            return;
+        }
+        segment.deleted = true;
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("删除对话历史日志失败: {}", segment.path, e);
+        }
+        for (Segment tombstoneSegment : segment.tombstoneSegments) {
+            release(tombstoneSegment);
+        }
+    }
+
+    /**
+     * 待写入记录及其所在的日志分段
+     */
+    private static class PendingRecord {
+
+        private final ChatHistory chatHistory;
+
+        private final Segment segment;
+
+        private PendingRecord(ChatHistory chatHistory, Segment segment) {
+            this.chatHistory = chatHistory;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * 追加日志分段
+     */
+    private static class Segment {
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        /**
+         * 已写入的字节数（持有 journalLock 时修改）
+         */
+        private long bytes;
+
+        /**
+         * 尚未落库的消息数，加上等待本分段删除的其他分段数（本分段中有它们的丢弃记录）
+         */
+        private final AtomicInteger unpersisted = new AtomicInteger();
+
+        /**
+         * 记录了本分段中消息被丢弃的分段（持有 journalLock 时修改）
+         */
+        private final List<Segment> tombstoneSegments = new ArrayList<>();
+
+        /**
+         * 是否已删除（持有 journalLock 时修改）
+         */
+        private boolean deleted;
+
+        private Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
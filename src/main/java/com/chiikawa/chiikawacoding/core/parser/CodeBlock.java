@@ -0,0 +1,35 @@
+package com.chiikawa.chiikawacoding.core.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Markdown 围栏代码块
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CodeBlock {
+
+    /**
+     * 语言标记（小写，如 html / css / js），没有标记时为空字符串
+     */
+    private String language;
+
+    /**
+     * 代码块内容（不含围栏行）
+     */
+    private String code;
+
+    /**
+     * 代码内容在原始输出中的起始偏移量（含）
+     */
+    private int startOffset;
+
+    /**
+     * 代码内容在原始输出中的结束偏移量（不含）
+     */
+    private int endOffset;
+}
@@ -0,0 +1,121 @@
+package com.chiikawa.chiikawacoding.core.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 围栏代码块提取器
+ * 单次线性扫描完整内容，按出现顺序返回所有代码块（语言标记 + 偏移量），
+ * 取代每种语言各跑一遍 ```lang\s*\n([\s\S]*?)``` 正则的做法
+ * <p>
+ * 围栏识别规则与 {@link StreamingCodeBlockParser} 一致：行首（允许缩进）的 ``` 为围栏，
+ * 开始围栏之后的第一个单词为语言标记，未闭合的代码块截止到内容末尾
+ *
+ */
+public class CodeBlockExtractor {
+
+    private static final String FENCE = "```";
+
+    private CodeBlockExtractor() {
+    }
+
+    /**
+     * 提取全部代码块
+     *
+     * @param content 原始内容
+     * @return 按出现顺序排列的代码块
+     */
+    public static List<CodeBlock> extract(String content) {
+        List<CodeBlock> codeBlocks = new ArrayList<>();
+        if (content == null || content.isEmpty()) {
+            return codeBlocks;
+        }
+        int length = content.length();
+        // 当前代码块的语言，为 null 表示不在代码块内
+        String language = null;
+        int codeStart = 0;
+        int lineStart = 0;
+        while (lineStart < length) {
+            int newline = content.indexOf('\n', lineStart);
+            int lineEnd = newline < 0 ? length : newline + 1;
+            int fenceEnd = fenceEnd(content, lineStart, lineEnd);
+            if (fenceEnd >= 0) {
+                if (language != null) {
+                    codeBlocks.add(new CodeBlock(language, content.substring(codeStart, lineStart), codeStart, lineStart));
+                    // 漏写结束围栏直接开始下一个代码块时，视为先闭合再开始
+                    language = isBlank(content, fenceEnd, lineEnd) ? null : parseLanguage(content, fenceEnd, lineEnd);
+                } else {
+                    language = parseLanguage(content, fenceEnd, lineEnd);
+                }
+                codeStart = lineEnd;
+            }
+            lineStart = lineEnd;
+        }
+        if (language != null) {
+            codeBlocks.add(new CodeBlock(language, content.substring(codeStart), codeStart, length));
+        }
+        return codeBlocks;
+    }
+
+    /**
+     * 获取第一个匹配语言的代码块内容
+     *
+     * @param codeBlocks 代码块列表
+     * @param languages  可接受的语言标记（小写）
+     * @return 代码内容，没有匹配时返回 null
+     */
+    public static String findFirstCode(List<CodeBlock> codeBlocks, String... languages) {
+        for (CodeBlock codeBlock : codeBlocks) {
+            for (String language : languages) {
+                if (language.equals(codeBlock.getLanguage())) {
+                    return codeBlock.getCode();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * [from, to) 范围内的行以 ```（允许缩进）开头时返回围栏之后的位置，否则返回 -1
+     */
+    static int fenceEnd(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+            i++;
+        }
+        if (i + FENCE.length() > to) {
+            return -1;
+        }
+        for (int j = 0; j < FENCE.length(); j++) {
+            if (text.charAt(i + j) != '`') {
+                return -1;
+            }
+        }
+        return i + FENCE.length();
+    }
+
+    /**
+     * 解析 [from, to) 范围内的第一个单词作为语言标记
+     */
+    static String parseLanguage(CharSequence text, int from, int to) {
+        int start = from;
+        while (start < to && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < to && !Character.isWhitespace(text.charAt(end))) {
+            end++;
+        }
+        return text.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+    }
+
+    static boolean isBlank(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
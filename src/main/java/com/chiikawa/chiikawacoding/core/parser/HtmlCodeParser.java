@@ -3,17 +3,12 @@ package com.chiikawa.chiikawacoding.core.parser;
 import cn.hutool.json.JSONObject;
 import com.chiikawa.chiikawacoding.ai.model.HtmlCodeResult;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * HTML 单文件代码解析器
  *
  */
 public class HtmlCodeParser implements CodeParser<HtmlCodeResult> {
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-
     @Override
     public HtmlCodeResult parseCode(String codeContent) {
         HtmlCodeResult result = new HtmlCodeResult();
@@ -57,10 +52,6 @@ public class HtmlCodeParser implements CodeParser<HtmlCodeResult> {
      * @return HTML代码
      */
     private String extractHtmlCode(String content) {
-        Matcher matcher = HTML_CODE_PATTERN.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
+        return CodeBlockExtractor.findFirstCode(CodeBlockExtractor.extract(content), "html");
     }
 }
@@ -3,8 +3,7 @@ package com.chiikawa.chiikawacoding.core.parser;
 import cn.hutool.json.JSONObject;
 import com.chiikawa.chiikawacoding.ai.model.MultiFileCodeResult;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * 多文件代码解析器（HTML + CSS + JS）
@@ -12,17 +11,14 @@ import java.util.regex.Pattern;
  */
 public class MultiFileCodeParser implements CodeParser<MultiFileCodeResult> {
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-
     @Override
     public MultiFileCodeResult parseCode(String codeContent) {
         MultiFileCodeResult result = new MultiFileCodeResult();
-        // 提取各类代码
-        String htmlCode = extractCodeByPattern(codeContent, HTML_CODE_PATTERN);
-        String cssCode = extractCodeByPattern(codeContent, CSS_CODE_PATTERN);
-        String jsCode = extractCodeByPattern(codeContent, JS_CODE_PATTERN);
+        // 单次扫描提取全部代码块，再按语言取出各类代码
+        List<CodeBlock> codeBlocks = CodeBlockExtractor.extract(codeContent);
+        String htmlCode = CodeBlockExtractor.findFirstCode(codeBlocks, "html");
+        String cssCode = CodeBlockExtractor.findFirstCode(codeBlocks, "css");
+        String jsCode = CodeBlockExtractor.findFirstCode(codeBlocks, "js", "javascript");
         // 设置HTML代码
         if (htmlCode != null && !htmlCode.trim().isEmpty()) {
             result.setHtmlCode(htmlCode.trim());
@@ -66,19 +62,4 @@ public class MultiFileCodeParser implements CodeParser<MultiFileCodeResult> {
         }
         return result;
     }
-
-    /**
-     * 根据正则模式提取代码
-     *
-     * @param content 原始内容
-     * @param pattern 正则模式
-     * @return 提取的代码
-     */
-    private String extractCodeByPattern(String content, Pattern pattern) {
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
 }
@@ -0,0 +1,142 @@
+package com.chiikawa.chiikawacoding.core.parser;
+
+import java.util.function.Consumer;
+
+/**
+ * 流式围栏代码块解析器
+ * 随着流式片段到达逐行识别 ``` 围栏的开闭，代码块一闭合就回调监听器，
+ * 只缓存当前未完成的行和当前代码块，不保留、也不重新扫描完整响应
+ * <p>
+ * 非线程安全，每个流使用一个实例
+ *
+ */
+public class StreamingCodeBlockParser {
+
+    /**
+     * 代码块闭合回调
+     */
+    private final Consumer<CodeBlock> blockListener;
+
+    /**
+     * 当前未完成的行
+     */
+    private final StringBuilder lineBuffer = new StringBuilder();
+
+    /**
+     * 当前代码块内容
+     */
+    private final StringBuilder blockBuilder = new StringBuilder();
+
+    /**
+     * 围栏之外的文本（说明文字，或模型未使用代码块时的完整输出）
+     */
+    private final StringBuilder outsideBuilder = new StringBuilder();
+
+    /**
+     * 当前代码块的语言，为 null 表示不在代码块内
+     */
+    private String currentLanguage;
+
+    /**
+     * lineBuffer 中当前行在原始输出中的起始偏移量
+     */
+    private int lineStartOffset;
+
+    /**
+     * 当前代码块内容的起始偏移量
+     */
+    private int codeStartOffset;
+
+    private int closedBlockCount;
+
+    public StreamingCodeBlockParser(Consumer<CodeBlock> blockListener) {
+        this.blockListener = blockListener;
+    }
+
+    /**
+     * 追加一个流式片段
+     *
+     * @param chunk 片段
+     */
+    public void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        int start = 0;
+        int newline;
+        while ((newline = chunk.indexOf('\n', start)) >= 0) {
+            lineBuffer.append(chunk, start, newline + 1);
+            handleLine();
+            start = newline + 1;
+        }
+        lineBuffer.append(chunk, start, chunk.length());
+    }
+
+    /**
+     * 流结束：处理最后一行，未闭合的代码块（如输出被截断）按已闭合处理
+     */
+    public void finish() {
+        if (!lineBuffer.isEmpty()) {
+            handleLine();
+        }
+        if (currentLanguage != null) {
+            closeBlock();
+        }
+    }
+
+    /**
+     * 获取围栏之外的文本
+     */
+    public String getOutsideText() {
+        return outsideBuilder.toString();
+    }
+
+    /**
+     * 获取已闭合的代码块数量
+     */
+    public int getClosedBlockCount() {
+        return closedBlockCount;
+    }
+
+    /**
+     * 处理 lineBuffer 中的一整行
+     */
+    private void handleLine() {
+        int lineLength = lineBuffer.length();
+        int fenceEnd = CodeBlockExtractor.fenceEnd(lineBuffer, 0, lineLength);
+        if (currentLanguage == null) {
+            if (fenceEnd >= 0) {
+                // 开始围栏，``` 之后的第一个单词为语言标记
+                currentLanguage = CodeBlockExtractor.parseLanguage(lineBuffer, fenceEnd, lineLength);
+                openBlock(lineLength);
+            } else {
+                outsideBuilder.append(lineBuffer);
+            }
+        } else if (fenceEnd >= 0) {
+            // 结束围栏；模型漏写结束围栏直接开始下一个代码块时，与原正则一致视为先闭合再开始
+            closeBlock();
+            if (!CodeBlockExtractor.isBlank(lineBuffer, fenceEnd, lineLength)) {
+                currentLanguage = CodeBlockExtractor.parseLanguage(lineBuffer, fenceEnd, lineLength);
+                openBlock(lineLength);
+            }
+        } else {
+            blockBuilder.append(lineBuffer);
+        }
+        lineStartOffset += lineLength;
+        lineBuffer.setLength(0);
+    }
+
+    private void openBlock(int fenceLineLength) {
+        blockBuilder.setLength(0);
+        codeStartOffset = lineStartOffset + fenceLineLength;
+    }
+
+    private void closeBlock() {
+        CodeBlock codeBlock = new CodeBlock(currentLanguage, blockBuilder.toString(),
+                codeStartOffset, codeStartOffset + blockBuilder.length());
+        currentLanguage = null;
+        blockBuilder.setLength(0);
+        closedBlockCount++;
+        blockListener.accept(codeBlock);
+    }
+}
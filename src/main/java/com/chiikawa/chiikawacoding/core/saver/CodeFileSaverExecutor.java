@@ -2,6 +2,7 @@ package com.chiikawa.chiikawacoding.core.saver;
 
 import com.chiikawa.chiikawacoding.ai.model.HtmlCodeResult;
 import com.chiikawa.chiikawacoding.ai.model.MultiFileCodeResult;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlock;
 import com.chiikawa.chiikawacoding.exception.BusinessException;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
 import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
@@ -35,4 +36,35 @@ public class CodeFileSaverExecutor {
         };
     }
 
+    /**
+     * 根据代码块语言确定要写入的文件名
+     *
+     * @param language    代码块语言
+     * @param codeGenType 代码生成类型
+     * @return 文件名，代码块不属于该类型时返回 null
+     */
+    public static String resolveFileName(String language, CodeGenTypeEnum codeGenType) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.resolveFileName(language);
+            case MULTI_FILE -> multiFileCodeFileSaver.resolveFileName(language);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
+
+    /**
+     * 执行单个代码块保存（流式场景）
+     *
+     * @param codeBlock   代码块
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 写入的文件，代码块不属于该类型或内容为空时返回 null
+     */
+    public static File executeBlockSaver(CodeBlock codeBlock, CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.saveCodeBlock(codeBlock, appId);
+            case MULTI_FILE -> multiFileCodeFileSaver.saveCodeBlock(codeBlock, appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
+
 }
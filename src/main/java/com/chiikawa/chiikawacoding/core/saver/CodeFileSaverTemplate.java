@@ -4,6 +4,7 @@ package com.chiikawa.chiikawacoding.core.saver;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
 import com.chiikawa.chiikawacoding.common.constant.AppConstant;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlock;
 import com.chiikawa.chiikawacoding.exception.BusinessException;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
 import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
@@ -38,6 +39,23 @@ public abstract class CodeFileSaverTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 保存单个代码块（流式生成时代码块闭合即写入）
+     *
+     * @param codeBlock 代码块
+     * @param appId     应用 ID
+     * @return 写入的文件，代码块不属于当前类型或内容为空时返回 null
+     */
+    public final File saveCodeBlock(CodeBlock codeBlock, Long appId) {
+        String filename = resolveFileName(codeBlock.getLanguage());
+        if (filename == null || StrUtil.isBlank(codeBlock.getCode())) {
+            return null;
+        }
+        String baseDirPath = buildUniqueDir(appId);
+        writeToFile(baseDirPath, filename, codeBlock.getCode().trim());
+        return new File(baseDirPath, filename);
+    }
+
     /**
      * 构建基于 appId 的目录路径
      *
@@ -88,6 +106,14 @@ public abstract class CodeFileSaverTemplate<T> {
      */
     protected abstract CodeGenTypeEnum getCodeType();
 
+    /**
+     * 根据代码块语言确定文件名（由子类实现）
+     *
+     * @param language 代码块语言
+     * @return 文件名，不属于当前类型时返回 null
+     */
+    public abstract String resolveFileName(String language);
+
     /**
      * 保存文件的具体实现（由子类实现）
      *
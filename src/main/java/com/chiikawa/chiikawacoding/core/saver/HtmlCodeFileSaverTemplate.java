@@ -17,6 +17,11 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
         return CodeGenTypeEnum.HTML;
     }
 
+    @Override
+    public String resolveFileName(String language) {
+        return "html".equals(language) ? "index.html" : null;
+    }
+
     @Override
     protected void saveFiles(HtmlCodeResult result, String baseDirPath) {
         // 保存 HTML 文件
@@ -17,6 +17,16 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaverTemplate<MultiF
         return CodeGenTypeEnum.MULTI_FILE;
     }
 
+    @Override
+    public String resolveFileName(String language) {
+        return switch (language) {
+            case "html" -> "index.html";
+            case "css" -> "style.css";
+            case "js", "javascript" -> "script.js";
+            default -> null;
+        };
+    }
+
     @Override
     protected void saveFiles(MultiFileCodeResult result, String baseDirPath) {
         // 保存 HTML 文件
@@ -0,0 +1,122 @@
+package com.chiikawa.chiikawacoding.core.saver;
+
+import cn.hutool.core.util.StrUtil;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlock;
+import com.chiikawa.chiikawacoding.core.parser.StreamingCodeBlockParser;
+import com.chiikawa.chiikawacoding.exception.BusinessException;
+import com.chiikawa.chiikawacoding.exception.ErrorCode;
+import com.chiikawa.chiikawacoding.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 流式代码文件保存器
+ * 边接收流式片段边解析代码块，每个代码块闭合后立即提交写入对应文件（HTML、MULTI_FILE）
+ * <p>
+ * 解析在调用线程上进行（开销很小），文件写入在保存线程池中按代码块顺序串行执行，
+ * 不占用大模型流式回调线程。与原正则解析保持一致：每个文件只取第一个代码块
+ *
+ */
+@Slf4j
+public class StreamingCodeFileSaver {
+
+    private final CodeGenTypeEnum codeGenType;
+
+    private final Long appId;
+
+    private final Executor saveExecutor;
+
+    private final StreamingCodeBlockParser codeBlockParser = new StreamingCodeBlockParser(this::submitCodeBlock);
+
+    /**
+     * 已提交写入的文件名（调用线程访问）
+     */
+    private final Set<String> submittedFiles = new HashSet<>();
+
+    /**
+     * 已成功写入的文件名（仅在写入链中访问）
+     */
+    private final List<String> savedFiles = new ArrayList<>();
+
+    /**
+     * 写入链，保证同一次生成的文件按顺序写入
+     */
+    private CompletableFuture<Void> saveChain = CompletableFuture.completedFuture(null);
+
+    private File savedDir;
+
+    public StreamingCodeFileSaver(CodeGenTypeEnum codeGenType, Long appId, Executor saveExecutor) {
+        this.codeGenType = codeGenType;
+        this.appId = appId;
+        this.saveExecutor = saveExecutor;
+    }
+
+    /**
+     * 追加流式片段
+     *
+     * @param chunk 片段
+     */
+    public void append(String chunk) {
+        codeBlockParser.append(chunk);
+    }
+
+    /**
+     * 流结束：提交剩余代码块，待全部写入后校验结果
+     *
+     * @return 保存的目录
+     */
+    public CompletableFuture<File> finish() {
+        codeBlockParser.finish();
+        if (!submittedFiles.contains("index.html")) {
+            String outsideText = codeBlockParser.getOutsideText();
+            // 如果没有找到 HTML 代码块，将整个内容作为HTML（仅 HTML 模式）
+            if (codeGenType == CodeGenTypeEnum.HTML && StrUtil.isNotBlank(outsideText)) {
+                submitCodeBlock(new CodeBlock("html", outsideText, 0, outsideText.length()));
+            } else {
+                return CompletableFuture.failedFuture(new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML代码内容不能为空"));
+            }
+        }
+        return saveChain.thenApply(ignored -> {
+            if (!savedFiles.contains("index.html")) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML文件写入失败");
+            }
+            return savedDir;
+        });
+    }
+
+    /**
+     * 获取已写入的文件名，需在 {@link #finish()} 完成后调用
+     */
+    public List<String> getSavedFiles() {
+        return savedFiles;
+    }
+
+    private void submitCodeBlock(CodeBlock codeBlock) {
+        String filename = CodeFileSaverExecutor.resolveFileName(codeBlock.getLanguage(), codeGenType);
+        if (filename == null || !submittedFiles.add(filename)) {
+            return;
+        }
+        saveChain = saveChain.thenRunAsync(() -> saveCodeBlock(codeBlock, filename), saveExecutor);
+    }
+
+    private void saveCodeBlock(CodeBlock codeBlock, String filename) {
+        try {
+            File savedFile = CodeFileSaverExecutor.executeBlockSaver(codeBlock, codeGenType, appId);
+            if (savedFile != null) {
+                savedFiles.add(filename);
+                savedDir = savedFile.getParentFile();
+                log.info("代码块已闭合，写入文件：{}", savedFile.getAbsolutePath());
+            }
+        } catch (Exception e) {
+            // 单个文件写入失败不影响其他文件
+            log.error("写入文件失败，appId: {}, 文件: {}, error: {}", appId, filename, e.getMessage());
+        }
+    }
+}
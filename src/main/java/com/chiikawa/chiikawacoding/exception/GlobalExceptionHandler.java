@@ -5,6 +5,9 @@ import com.chiikawa.chiikawacoding.common.baseReqAndRes.BaseResponse;
 import com.chiikawa.chiikawacoding.common.utils.ResultUtils;
 import io.swagger.v3.oas.annotations.Hidden;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -13,6 +16,16 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    @ExceptionHandler(RetryLaterException.class)
+    public ResponseEntity<BaseResponse<?>> retryLaterExceptionHandler(RetryLaterException e) {
+        log.warn("RetryLaterException: {}", e.getMessage());
+        // 流式接口也按 JSON 返回错误，不参与内容协商
+        return ResponseEntity.status(e.getCode() / 100)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ResultUtils.error(e.getCode(), e.getMessage()));
+    }
+
     @ExceptionHandler(BusinessException.class)
     public BaseResponse<?> businessExceptionHandler(BusinessException e) {
         log.error("BusinessException", e);
@@ -0,0 +1,21 @@
+package com.chiikawa.chiikawacoding.exception;
+
+import lombok.Getter;
+
+/**
+ * 需要客户端稍后重试的业务异常（服务繁忙、请求过于频繁）
+ * 响应的 HTTP 状态码取错误码的前三位，并通过 Retry-After 响应头告知重试间隔
+ */
+@Getter
+public class RetryLaterException extends BusinessException {
+
+    /**
+     * 建议的重试间隔（秒）
+     */
+    private final long retryAfterSeconds;
+
+    public RetryLaterException(ErrorCode errorCode, String message, long retryAfterSeconds) {
+        super(errorCode, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -2,6 +2,11 @@ package com.chiikawa.chiikawacoding.mapper;
 
 import com.mybatisflex.core.BaseMapper;
 import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 对话历史 映射层。
@@ -10,4 +15,33 @@ import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
  */
 public interface ChatHistoryMapper extends BaseMapper<ChatHistory> {
 
+    /**
+     * 查询多个应用各自最近的消息（只含 appId、message、messageType），按应用、时间正序排列
+     *
+     * @param table 物理表（分表后各应用所在的表）
+     */
+    List<ChatHistory> selectRecentMessages(@Param("table") String table,
+                                           @Param("appIds") Collection<Long> appIds,
+                                           @Param("maxCount") int maxCount);
+
+    /**
+     * 查询最近有对话的应用（只含 appId 和最近对话时间 createTime），按最近对话时间倒序排列
+     *
+     * @param table 物理表
+     */
+    List<ChatHistory> selectRecentlyActiveApps(@Param("table") String table,
+                                               @Param("since") LocalDateTime since,
+                                               @Param("limit") int limit);
+
+    /**
+     * 把指定记录原样复制到分表，已存在的记录（双写写入或已复制过）忽略
+     *
+     * @param sourceTable 源表
+     * @param targetTable 目标分表
+     * @param ids         记录 ID
+     * @return 新复制的行数
+     */
+    int insertIgnoreCopy(@Param("sourceTable") String sourceTable,
+                         @Param("targetTable") String targetTable,
+                         @Param("ids") Collection<Long> ids);
 }
@@ -1,5 +1,7 @@
 package com.chiikawa.chiikawacoding.model.entity;
 
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryMessageCodec;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.mybatisflex.annotation.Column;
 import com.mybatisflex.annotation.Id;
 import com.mybatisflex.annotation.KeyType;
@@ -37,10 +39,17 @@ public class ChatHistory implements Serializable {
     private Long id;
 
     /**
-     * 消息
+     * 消息（压缩存储时数据库中只保存开头的一段明文供管理员搜索，由 {@link #getMessage()} 按需解压出完整内容）
      */
     private String message;
 
+    /**
+     * 压缩后的消息（编码标记 + 压缩数据），较长的消息才压缩存储
+     */
+    @JsonIgnore
+    @Column("messageCompressed")
+    private byte[] messageCompressed;
+
     /**
      * user/ai
      */
@@ -77,4 +86,22 @@ public class ChatHistory implements Serializable {
     @Column(value = "isDelete", isLogicDelete = true)
     private Integer isDelete;
 
+    /**
+     * message 是否已是最终内容：解压后，或是写入数据库的形式（message 为明文前缀，写入时不能解压）
+     */
+    @JsonIgnore
+    @Column(ignore = true)
+    private transient boolean messageResolved;
+
+    /**
+     * 消息，压缩存储的消息在第一次读取时解压
+     */
+    public String getMessage() {
+        if (!messageResolved && messageCompressed != null) {
+            message = ChatHistoryMessageCodec.decode(messageCompressed);
+            messageResolved = true;
+        }
+        return message;
+    }
+
 }
@@ -0,0 +1,22 @@
+package com.chiikawa.chiikawacoding.model.enums;
+
+import lombok.Getter;
+
+/**
+ * 限流维度枚举
+ */
+@Getter
+public enum RateLimitTypeEnum {
+
+    USER("按用户", "user"),
+    IP("按IP", "ip");
+
+    private final String text;
+
+    private final String value;
+
+    RateLimitTypeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+}
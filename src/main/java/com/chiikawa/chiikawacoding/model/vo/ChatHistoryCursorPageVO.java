@@ -0,0 +1,31 @@
+package com.chiikawa.chiikawacoding.model.vo;
+
+import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 对话历史游标分页结果（不统计总数）
+ */
+@Data
+public class ChatHistoryCursorPageVO implements Serializable {
+
+    /**
+     * 本页记录，按创建时间倒序
+     */
+    private List<ChatHistory> records;
+
+    /**
+     * 下一页游标，没有更多记录时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更早的记录
+     */
+    private boolean hasMore;
+
+    private static final long serialVersionUID = 1L;
+}
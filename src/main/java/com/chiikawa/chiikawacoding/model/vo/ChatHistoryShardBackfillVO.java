@@ -0,0 +1,44 @@
+package com.chiikawa.chiikawacoding.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 对话历史分表回填进度
+ */
+@Data
+public class ChatHistoryShardBackfillVO implements Serializable {
+
+    /**
+     * 状态：IDLE / RUNNING / COMPLETED / STOPPED / FAILED
+     */
+    private String status;
+
+    /**
+     * 已扫描的单表记录数（包括已逻辑删除的）
+     */
+    private long scanned;
+
+    /**
+     * 新复制到分表的记录数（双写已写入的记录不重复计算）
+     */
+    private long copied;
+
+    /**
+     * 已处理到的最大记录 ID，中止后再次启动时从这里继续
+     */
+    private long lastId;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime finishTime;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    private static final long serialVersionUID = 1L;
+}
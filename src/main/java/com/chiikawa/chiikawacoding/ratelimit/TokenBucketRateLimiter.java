@@ -0,0 +1,173 @@
+package com.chiikawa.chiikawacoding.ratelimit;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.chiikawa.chiikawacoding.config.RateLimitConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器
+ * 令牌桶保存在 Redis 中，多个实例共享；检查和扣减由一个 Lua 脚本原子完成，只需一次往返。
+ * Redis 超时或不可用时降级为本机令牌桶（此时各实例分别计数）
+ */
+@Component
+@Slf4j
+public class TokenBucketRateLimiter {
+
+    private static final String KEY_PREFIX = "rate_limit:";
+
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        TOKEN_BUCKET_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/token_bucket.lua")));
+        TOKEN_BUCKET_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RateLimitConfig rateLimitConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 执行 Redis 检查的线程池，用于在调用线程上限定等待时间
+     */
+    private final ThreadPoolExecutor redisExecutor = new ThreadPoolExecutor(
+            4, 4,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256),
+            ThreadFactoryBuilder.create().setNamePrefix("rate-limit-").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    /**
+     * 本机令牌桶，Redis 不可用时使用
+     */
+    private final Cache<String, LocalTokenBucket> localBuckets = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * 在此时间之前不再访问 Redis
+     */
+    private volatile long redisRetryAt;
+
+    private Counter fallbackCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        fallbackCounter = meterRegistry.counter("rate.limit.fallback");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        redisExecutor.shutdown();
+    }
+
+    /**
+     * 从所有令牌桶中各申请一个令牌，所有桶都有令牌时才扣减
+     *
+     * @param keys          令牌桶键
+     * @param permits       每个周期允许的请求数（桶容量）
+     * @param periodSeconds 周期（秒）
+     * @return 0 表示放行，否则为建议等待的毫秒数
+     */
+    public long tryAcquire(List<String> keys, int permits, int periodSeconds) {
+        double ratePerSecond = (double) permits / periodSeconds;
+        if (System.currentTimeMillis() >= redisRetryAt) {
+            try {
+                return tryAcquireRedis(keys, permits, ratePerSecond, periodSeconds);
+            } catch (Exception e) {
+                redisRetryAt = System.currentTimeMillis() + rateLimitConfig.getRedisRetryIntervalMillis();
+                log.warn("Redis 限流检查失败，暂时使用本机令牌桶: {}", e.toString());
+            }
+        }
+        fallbackCounter.increment();
+        return tryAcquireLocal(keys, permits, ratePerSecond);
+    }
+
+    private long tryAcquireRedis(List<String> keys, int permits, double ratePerSecond, int periodSeconds) throws Exception {
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            redisKeys.add(KEY_PREFIX + key);
+        }
+        // 桶补满后与不存在等价，过期时间取补满所需时间
+        long ttlMillis = periodSeconds * 1000L + 1000L;
+        CompletableFuture<Long> future = CompletableFuture.supplyAsync(() -> stringRedisTemplate.execute(
+                TOKEN_BUCKET_SCRIPT, redisKeys,
+                String.valueOf(permits), String.valueOf(ratePerSecond), "1", String.valueOf(ttlMillis)), redisExecutor);
+        try {
+            Long waitMillis = future.get(rateLimitConfig.getRedisTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return waitMillis == null ? 0 : waitMillis;
+        } catch (Exception e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    private synchronized long tryAcquireLocal(List<String> keys, int permits, double ratePerSecond) {
+        long now = System.currentTimeMillis();
+        List<LocalTokenBucket> buckets = new ArrayList<>(keys.size());
+        long waitMillis = 0;
+        for (String key : keys) {
+            LocalTokenBucket bucket = localBuckets.get(key, k -> new LocalTokenBucket(permits, now));
+            bucket.refill(permits, ratePerSecond, now);
+            waitMillis = Math.max(waitMillis, bucket.waitMillis(ratePerSecond));
+            buckets.add(bucket);
+        }
+        if (waitMillis == 0) {
+            buckets.forEach(LocalTokenBucket::take);
+        }
+        return waitMillis;
+    }
+
+    /**
+     * 本机令牌桶，只在持有限流器锁时访问
+     */
+    private static class LocalTokenBucket {
+
+        private double tokens;
+
+        private long lastRefillTime;
+
+        private LocalTokenBucket(double tokens, long lastRefillTime) {
+            this.tokens = tokens;
+            this.lastRefillTime = lastRefillTime;
+        }
+
+        private void refill(int capacity, double ratePerSecond, long now) {
+            tokens = Math.min(capacity, tokens + Math.max(0, now - lastRefillTime) * ratePerSecond / 1000);
+            lastRefillTime = now;
+        }
+
+        private long waitMillis(double ratePerSecond) {
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * 1000 / ratePerSecond);
+        }
+
+        private void take() {
+            tokens -= 1;
+        }
+    }
+}
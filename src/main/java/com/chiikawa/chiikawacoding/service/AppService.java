@@ -1,8 +1,10 @@
 package com.chiikawa.chiikawacoding.service;
 
+import com.chiikawa.chiikawacoding.core.GenerationEvent;
 import com.chiikawa.chiikawacoding.model.dto.app.AppQueryRequest;
 import com.chiikawa.chiikawacoding.model.entity.User;
 import com.chiikawa.chiikawacoding.model.vo.AppVO;
+import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
 import com.chiikawa.chiikawacoding.model.entity.App;
@@ -94,6 +96,31 @@ public interface AppService extends IService<App> {
      */
     QueryWrapper getFeaturedAppQueryWrapper(AppQueryRequest appQueryRequest);
 
+    /**
+     * 分页查询用户自己的应用列表（不执行 COUNT 查询）
+     *
+     * @param appQueryRequest 查询条件
+     * @param request 请求信息
+     * @return 分页结果
+     */
+    Page<AppVO> listUserAppVOByPage(AppQueryRequest appQueryRequest, HttpServletRequest request);
+
+    /**
+     * 分页查询精选应用列表（不执行 COUNT 查询）
+     *
+     * @param appQueryRequest 查询条件
+     * @return 分页结果
+     */
+    Page<AppVO> listFeaturedAppVOByPage(AppQueryRequest appQueryRequest);
+
+    /**
+     * 分页查询应用列表（管理员，不执行 COUNT 查询）
+     *
+     * @param appQueryRequest 查询条件
+     * @return 分页结果
+     */
+    Page<AppVO> listAdminAppVOByPage(AppQueryRequest appQueryRequest);
+
     /**
      * 获取应用VO
      *
@@ -110,7 +137,16 @@ public interface AppService extends IService<App> {
      */
     List<AppVO> getAppVOList(List<App> appList);
 
-    Flux<String> chatToGenCode(Long appId, String message, User loginUser);
+    /**
+     * 应用聊天生成代码（流式）
+     *
+     * @param appId       应用id
+     * @param message     用户消息
+     * @param lastEventId 断线重连时客户端收到的最后一个事件 ID，不为空时续传而不是重新生成
+     * @param loginUser   登录用户
+     * @return 生成事件：AI 响应片段，HTML、MULTI_FILE 模式下最后附带代码保存完成消息
+     */
+    Flux<GenerationEvent> chatToGenCode(Long appId, String message, String lastEventId, User loginUser);
 
     String deployApp(Long appId, User loginUser);
 }
@@ -2,13 +2,17 @@ package com.chiikawa.chiikawacoding.service;
 
 import com.chiikawa.chiikawacoding.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.chiikawa.chiikawacoding.model.entity.User;
+import com.chiikawa.chiikawacoding.model.vo.ChatHistoryCursorPageVO;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
 import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.ChatMessage;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 对话历史 服务层。
@@ -27,5 +31,13 @@ public interface ChatHistoryService extends IService<ChatHistory> {
                                                LocalDateTime lastCreateTime,
                                                User loginUser);
 
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    ChatHistoryCursorPageVO listAppChatHistoryByCursor(Long appId, int pageSize, String cursor, User loginUser);
+
+    List<ChatMessage> loadChatHistoryMessages(Long appId, int maxCount, boolean excludeLatest);
+
+    Map<Long, List<ChatMessage>> batchLoadChatHistoryMessages(Collection<Long> appIds, int maxCount);
+
+    List<Long> listRecentlyActiveAppIds(LocalDateTime since, int limit);
+
+    Page<ChatHistory> listAllChatHistoryByPageForAdmin(ChatHistoryQueryRequest chatHistoryQueryRequest);
 }
@@ -5,9 +5,19 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
+import com.chiikawa.chiikawacoding.ai.AppChatMemoryProvider;
+import com.chiikawa.chiikawacoding.ai.memory.ChatMemoryCompactor;
+import com.chiikawa.chiikawacoding.ai.model.message.AiResponseMessage;
+import com.chiikawa.chiikawacoding.ai.model.message.CodeSavedMessage;
+import com.chiikawa.chiikawacoding.ai.model.message.StreamMessage;
 import com.chiikawa.chiikawacoding.common.constant.AppConstant;
 import com.chiikawa.chiikawacoding.common.constant.UserConstant;
 import com.chiikawa.chiikawacoding.core.AiCodeGeneratorFacade;
+import com.chiikawa.chiikawacoding.core.GenerationAdmissionQueue;
+import com.chiikawa.chiikawacoding.core.GenerationEvent;
+import com.chiikawa.chiikawacoding.core.GenerationLeaseManager;
+import com.chiikawa.chiikawacoding.core.cache.AppCacheInvalidationBus;
+import com.chiikawa.chiikawacoding.core.cache.AppCountCache;
 import com.chiikawa.chiikawacoding.core.handler.StreamHandlerExecutor;
 import com.chiikawa.chiikawacoding.exception.BusinessException;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
@@ -22,6 +32,7 @@ import com.chiikawa.chiikawacoding.model.vo.AppVO;
 import com.chiikawa.chiikawacoding.service.AppService;
 import com.chiikawa.chiikawacoding.service.ChatHistoryService;
 import com.chiikawa.chiikawacoding.service.UserService;
+import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import jakarta.annotation.Resource;
@@ -29,11 +40,13 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.File;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -51,6 +64,24 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private AiCodeGeneratorFacade aiCodeGeneratorFacade;
 
+    @Resource
+    private GenerationLeaseManager generationLeaseManager;
+
+    @Resource
+    private AppChatMemoryProvider appChatMemoryProvider;
+
+    @Resource
+    private ChatMemoryCompactor chatMemoryCompactor;
+
+    @Resource
+    private AppCacheInvalidationBus appCacheInvalidationBus;
+
+    @Resource
+    private AppCountCache appCountCache;
+
+    @Resource
+    private GenerationAdmissionQueue generationAdmissionQueue;
+
     @Resource
     private ChatHistoryService chatHistoryService;
 
@@ -112,7 +143,14 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         updateApp.setAppName(app.getAppName());
         updateApp.setCover(app.getCover());
         updateApp.setPriority(app.getPriority());
-        return updateById(updateApp);
+        boolean updated = updateById(updateApp);
+        // 管理员修改后通知所有实例清除该应用的缓存
+        appCacheInvalidationBus.invalidate(app.getId());
+        // 优先级变化可能改变精选应用数，重新统计
+        if (updated && app.getPriority() != null) {
+            appCountCache.invalidate(appCountCache.featuredKey());
+        }
+        return updated;
     }
 
     @Override
@@ -141,10 +179,14 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
 
     @Override
     public QueryWrapper getUserAppQueryWrapper(AppQueryRequest appQueryRequest, HttpServletRequest request) {
-        QueryWrapper queryWrapper = new QueryWrapper();
         User loginUser = userService.getLoginUser(request);
+        return buildUserAppQueryWrapper(appQueryRequest, loginUser.getId());
+    }
+
+    private QueryWrapper buildUserAppQueryWrapper(AppQueryRequest appQueryRequest, Long userId) {
+        QueryWrapper queryWrapper = new QueryWrapper();
         // 用户只能查询自己的应用
-        queryWrapper.eq("userId", loginUser.getId());
+        queryWrapper.eq("userId", userId);
         // 构建查询条件
         buildQueryWrapper(queryWrapper, appQueryRequest);
         return queryWrapper;
@@ -174,6 +216,76 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         return queryWrapper;
     }
 
+    @Override
+    public Page<AppVO> listUserAppVOByPage(AppQueryRequest appQueryRequest, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        QueryWrapper queryWrapper = buildUserAppQueryWrapper(appQueryRequest, loginUser.getId());
+        String countKey = hasFilter(appQueryRequest) ? null : appCountCache.userKey(loginUser.getId());
+        return pageWithoutCount(appQueryRequest, queryWrapper, countKey);
+    }
+
+    @Override
+    public Page<AppVO> listFeaturedAppVOByPage(AppQueryRequest appQueryRequest) {
+        QueryWrapper queryWrapper = getFeaturedAppQueryWrapper(appQueryRequest);
+        String countKey = hasFilter(appQueryRequest) ? null : appCountCache.featuredKey();
+        return pageWithoutCount(appQueryRequest, queryWrapper, countKey);
+    }
+
+    @Override
+    public Page<AppVO> listAdminAppVOByPage(AppQueryRequest appQueryRequest) {
+        QueryWrapper queryWrapper = getAdminAppQueryWrapper(appQueryRequest);
+        String countKey = null;
+        if (!hasFilter(appQueryRequest)) {
+            Long userId = appQueryRequest.getUserId();
+            countKey = userId == null ? appCountCache.allKey() : appCountCache.userKey(userId);
+        }
+        return pageWithoutCount(appQueryRequest, queryWrapper, countKey);
+    }
+
+    /**
+     * 是否带有筛选条件（名称模糊查询等），带筛选条件的总数无法缓存
+     */
+    private boolean hasFilter(AppQueryRequest appQueryRequest) {
+        return appQueryRequest.getId() != null
+                || StrUtil.isNotBlank(appQueryRequest.getAppName())
+                || StrUtil.isNotBlank(appQueryRequest.getCodeGenType());
+    }
+
+    /**
+     * 分页查询，不执行与数据查询同条件的 COUNT：
+     * 有计数键时使用缓存的总数（缓存不存在时统计一次并写入），否则多查询一条探测是否有下一页，
+     * 总数为已查询到的数量（有下一页时多计一条），前端据此判断是否还有更多
+     *
+     * @param countKey 应用数量缓存键，为 null 时探测下一页
+     */
+    private Page<AppVO> pageWithoutCount(AppQueryRequest appQueryRequest, QueryWrapper queryWrapper, String countKey) {
+        long pageNum = Math.max(1, appQueryRequest.getPageNum());
+        long pageSize = appQueryRequest.getPageSize();
+        ThrowUtils.throwIf(pageSize <= 0, ErrorCode.PARAMS_ERROR, "页面大小必须大于0");
+        long offset = (pageNum - 1) * pageSize;
+        long totalRow;
+        List<App> records;
+        if (countKey != null && appCountCache.isEnabled()) {
+            Long cachedTotal = appCountCache.get(countKey);
+            if (cachedTotal == null) {
+                cachedTotal = count(queryWrapper.clone());
+                appCountCache.put(countKey, cachedTotal);
+            }
+            records = list(queryWrapper.limit(offset, pageSize));
+            // 近似总数不小于实际已查到的数量
+            totalRow = Math.max(cachedTotal, offset + records.size());
+        } else {
+            records = list(queryWrapper.limit(offset, pageSize + 1));
+            totalRow = offset + records.size();
+            if (records.size() > pageSize) {
+                records = records.subList(0, (int) pageSize);
+            }
+        }
+        Page<AppVO> appVOPage = new Page<>(pageNum, pageSize, totalRow);
+        appVOPage.setRecords(getAppVOList(records));
+        return appVOPage;
+    }
+
     @Override
     public AppVO getAppVO(App app) {
         if (app == null) {
@@ -229,7 +341,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     }
 
     @Override
-    public Flux<String> chatToGenCode(Long appId, String message, User loginUser) {
+    public Flux<GenerationEvent> chatToGenCode(Long appId, String message, String lastEventId, User loginUser) {
         // 1. 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
@@ -246,13 +358,34 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
         }
-        // 5. 通过校验后，添加用户消息到对话历史
-        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        // 6. 调用 AI 生成代码（流式）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
-        // 7. 收集 AI 响应内容并在完成后记录到对话历史
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
+        // 5. 断线重连时从下一条事件续传，生成已超出续传窗口时不再重新生成，只通知客户端重置
+        if (StrUtil.isNotBlank(lastEventId)) {
+            return generationLeaseManager.resume(appId, lastEventId);
+        }
+        // 6. 同一应用同一时间只进行一次生成，重复请求订阅正在进行的生成；
+        //    新的生成先经过准入排队，队列已满时直接拒绝
+        return generationLeaseManager.acquire(appId, () -> generationAdmissionQueue.submit(loginUser.getId(),
+                () -> doChatToGenCode(appId, message, loginUser, codeGenTypeEnum)));
+    }
 
+    /**
+     * 启动一次代码生成（已获得应用的生成租约）
+     */
+    private Flux<StreamMessage> doChatToGenCode(Long appId, String message, User loginUser, CodeGenTypeEnum codeGenTypeEnum) {
+        // 1. 添加用户消息到对话历史
+        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
+        // 未缓存的应用提前在加载线程池中加载对话记忆，与后续处理并行
+        appChatMemoryProvider.prefetch(appId);
+        // 2. 调用 AI 生成代码（流式），文件写入完成后记录保存结果
+        AtomicReference<CodeSavedMessage> codeSavedMessage = new AtomicReference<>();
+        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId,
+                codeSavedMessage::set);
+        // 3. 收集 AI 响应内容并在完成后记录到对话历史
+        Flux<String> contentStream = streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
+        // 4. 内容流结束后追加保存完成消息，生成完成后在后台检查是否需要压缩对话记忆
+        return contentStream.<StreamMessage>map(AiResponseMessage::new)
+                .concatWith(Mono.fromSupplier(codeSavedMessage::get))
+                .doOnComplete(() -> chatMemoryCompactor.requestCompaction(appId));
     }
 
     @Override
@@ -324,8 +457,30 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             // 记录日志但不阻止应用删除
             log.error("删除应用关联对话历史失败: {}", e.getMessage());
         }
+        App app = appCountCache.isEnabled() ? getById(appId) : null;
         // 删除应用
-        return super.removeById(id);
+        boolean removed = super.removeById(id);
+        // 通知所有实例清除该应用的缓存
+        appCacheInvalidationBus.invalidate(appId);
+        if (removed && app != null) {
+            appCountCache.adjust(app, -1);
+        }
+        return removed;
+    }
+
+    /**
+     * 创建应用后调整应用数量缓存
+     *
+     * @param app 应用
+     * @return 是否成功
+     */
+    @Override
+    public boolean save(App app) {
+        boolean saved = super.save(app);
+        if (saved) {
+            appCountCache.adjust(app, 1);
+        }
+        return saved;
     }
 
 }
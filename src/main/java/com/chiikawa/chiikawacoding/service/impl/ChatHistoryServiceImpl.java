@@ -1,14 +1,23 @@
 package com.chiikawa.chiikawacoding.service.impl;
 
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
 import com.chiikawa.chiikawacoding.common.constant.UserConstant;
+import com.chiikawa.chiikawacoding.core.cache.AppCacheInvalidationBus;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryCompressor;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryShardRouter;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryWriteBehind;
+import com.chiikawa.chiikawacoding.exception.BusinessException;
 import com.chiikawa.chiikawacoding.exception.ErrorCode;
 import com.chiikawa.chiikawacoding.exception.ThrowUtils;
 import com.chiikawa.chiikawacoding.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.chiikawa.chiikawacoding.model.entity.App;
 import com.chiikawa.chiikawacoding.model.entity.User;
 import com.chiikawa.chiikawacoding.model.enums.ChatHistoryMessageTypeEnum;
+import com.chiikawa.chiikawacoding.model.vo.ChatHistoryCursorPageVO;
 import com.chiikawa.chiikawacoding.service.AppService;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
@@ -17,15 +26,25 @@ import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
 import com.chiikawa.chiikawacoding.mapper.ChatHistoryMapper;
 import com.chiikawa.chiikawacoding.service.ChatHistoryService;
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.lang.reflect.Field;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * 对话历史 服务层实现。
@@ -40,6 +59,29 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Lazy
     private AppService appService;
 
+    @Resource
+    private ChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private AppCacheInvalidationBus appCacheInvalidationBus;
+
+    @Resource
+    private ChatHistoryWriteBehind chatHistoryWriteBehind;
+
+    @Resource
+    private ChatHistoryCompressor chatHistoryCompressor;
+
+    @Resource
+    private ChatHistoryShardRouter chatHistoryShardRouter;
+
+    /**
+     * 对话历史倒序：创建时间相同时按 ID（雪花算法，单调递增）
+     */
+    private static final Comparator<ChatHistory> NEWEST_FIRST = Comparator
+            .comparing(ChatHistory::getCreateTime)
+            .thenComparing(ChatHistory::getId)
+            .reversed();
+
     @Override
     public boolean addChatMessage(Long appId, String message, String messageType, Long userId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
@@ -55,7 +97,13 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
                 .messageType(messageType)
                 .userId(userId)
                 .build();
-        return this.save(chatHistory);
+        // 异步批量写入：追加本地日志后立即返回，由后台线程批量落库
+        if (chatHistoryWriteBehind.isEnabled()) {
+            chatHistoryWriteBehind.append(chatHistory);
+            return true;
+        }
+        ChatHistory stored = chatHistoryCompressor.forStorage(chatHistory);
+        return chatHistoryShardRouter.write(appId, () -> this.save(stored));
     }
 
     @Override
@@ -63,7 +111,13 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
-        return this.remove(queryWrapper);
+        // 先丢弃尚未落库的消息，避免删除后又被批量写入
+        chatHistoryWriteBehind.discard(appId);
+        boolean removed = chatHistoryShardRouter.write(appId, () -> this.remove(queryWrapper));
+        // 同时清除 Redis 对话记忆和各实例的本地缓存，避免继续使用已删除的上下文
+        redisChatMemoryStore.deleteMessages(appId);
+        appCacheInvalidationBus.invalidate(appId);
+        return removed;
     }
 
     /**
@@ -113,56 +167,283 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
                                                       User loginUser) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
-        ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR);
-        // 验证权限：只有应用创建者和管理员可以查看
-        App app = appService.getById(appId);
-        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
-        boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
-        boolean isCreator = app.getUserId().equals(loginUser.getId());
-        ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+        checkChatHistoryAuth(appId, loginUser);
         // 构建查询条件
         ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
         queryRequest.setAppId(appId);
         queryRequest.setLastCreateTime(lastCreateTime);
         QueryWrapper queryWrapper = this.getQueryWrapper(queryRequest);
+        // 尚未落库的消息先于数据表读取，见 mergePending
+        List<ChatHistory> pendingList = chatHistoryWriteBehind.pendingFor(appId).stream()
+                .filter(history -> lastCreateTime == null || history.getCreateTime().isBefore(lastCreateTime))
+                .toList();
         // 查询数据
-        return this.page(Page.of(1, pageSize), queryWrapper);
+        Page<ChatHistory> page = chatHistoryShardRouter.read(appId, () -> this.page(Page.of(1, pageSize), queryWrapper));
+        // 合并尚未落库的消息，刚发送的消息立即可见
+        if (!pendingList.isEmpty()) {
+            int storedCount = page.getRecords().size();
+            List<ChatHistory> records = mergePending(page.getRecords(), pendingList);
+            page.setTotalRow(page.getTotalRow() + records.size() - storedCount);
+            page.setRecords(records.subList(0, Math.min(pageSize, records.size())));
+        }
+        return page;
+    }
+
+    /**
+     * 游标分页查询应用的对话历史，游标为上一页最后一条记录的 (createTime, id)，不执行 COUNT 查询
+     * 按 (createTime, id) 倒序走 idx_appId_createTime 索引（二级索引隐含主键），每页只扫描 pageSize + 1 行
+     *
+     * @param appId     应用 ID
+     * @param pageSize  页面大小
+     * @param cursor    上一页返回的游标，为空时查询最新一页
+     * @param loginUser 登录用户
+     * @return 本页记录、下一页游标和是否还有更多
+     */
+    @Override
+    public ChatHistoryCursorPageVO listAppChatHistoryByCursor(Long appId, int pageSize, String cursor, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
+        checkChatHistoryAuth(appId, loginUser);
+        ChatHistory after = StrUtil.isBlank(cursor) ? null : decodeCursor(cursor);
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistory::getAppId, appId);
+        if (after != null) {
+            // createTime <= ? 作为索引范围的上界，同一时间的记录再按 id 排除
+            queryWrapper.le(ChatHistory::getCreateTime, after.getCreateTime())
+                    .and((Consumer<QueryWrapper>) wrapper -> wrapper.lt(ChatHistory::getCreateTime, after.getCreateTime())
+                            .or(ChatHistory::getId).lt(after.getId()));
+        }
+        queryWrapper.orderBy(ChatHistory::getCreateTime, false)
+                .orderBy(ChatHistory::getId, false)
+                .limit(pageSize + 1);
+        // 合并尚未落库的消息，刚发送的消息立即可见
+        List<ChatHistory> pendingList = chatHistoryWriteBehind.pendingFor(appId).stream()
+                .filter(history -> after == null || NEWEST_FIRST.compare(history, after) > 0)
+                .toList();
+        List<ChatHistory> records = mergePending(chatHistoryShardRouter.read(appId, () -> this.list(queryWrapper)),
+                pendingList);
+        ChatHistoryCursorPageVO result = new ChatHistoryCursorPageVO();
+        result.setHasMore(records.size() > pageSize);
+        result.setRecords(records.subList(0, Math.min(pageSize, records.size())));
+        if (result.isHasMore()) {
+            result.setNextCursor(encodeCursor(result.getRecords().getLast()));
+        }
+        return result;
+    }
+
+    /**
+     * 合并数据表中的记录和尚未落库的消息，按 ID 去重后倒序排列
+     * 尚未落库的消息需在查询数据表之前取得：批量写入在插入提交后才把消息移出 pending，
+     * 先取 pending 再查表时，查询期间落库的消息至少出现在其中一边（两边都有时去重），不会丢失
+     */
+    private List<ChatHistory> mergePending(List<ChatHistory> records, List<ChatHistory> pendingList) {
+        List<ChatHistory> merged = new ArrayList<>(records);
+        if (!pendingList.isEmpty()) {
+            Set<Long> storedIds = records.stream().map(ChatHistory::getId).collect(Collectors.toSet());
+            pendingList.stream()
+                    .filter(history -> !storedIds.contains(history.getId()))
+                    .forEach(merged::add);
+        }
+        merged.sort(NEWEST_FIRST);
+        return merged;
+    }
+
+    /**
+     * 校验查看权限：只有应用创建者和管理员可以查看
+     */
+    private void checkChatHistoryAuth(Long appId, User loginUser) {
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR);
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
+        boolean isCreator = app.getUserId().equals(loginUser.getId());
+        ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+    }
+
+    /**
+     * 游标编码：createTime 和 id 拼接后 URL 安全的 Base64，对前端不透明
+     */
+    private String encodeCursor(ChatHistory last) {
+        return Base64.encodeUrlSafe(last.getCreateTime() + "_" + last.getId());
     }
 
+    private ChatHistory decodeCursor(String cursor) {
+        try {
+            List<String> parts = StrUtil.split(Base64.decodeStr(cursor), '_');
+            ThrowUtils.throwIf(parts.size() != 2, ErrorCode.PARAMS_ERROR, "无效的游标");
+            return ChatHistory.builder()
+                    .createTime(LocalDateTime.parse(parts.get(0)))
+                    .id(Long.parseLong(parts.get(1)))
+                    .build();
+        } catch (RuntimeException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "无效的游标");
+        }
+    }
+
+    /**
+     * 加载应用最近的对话历史，只查询消息内容（含压缩存储的内容）、类型和排序字段（走 idx_appId_createTime 索引），并合并尚未落库的消息
+     *
+     * @param appId         应用 ID
+     * @param maxCount      最大消息数
+     * @param excludeLatest 是否跳过最新一条消息（本轮刚写入的用户消息由 AI 服务自行加入记忆）
+     * @return 按时间正序排列的消息，加载失败时返回空列表（只是没有历史上下文）
+     */
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public List<ChatMessage> loadChatHistoryMessages(Long appId, int maxCount, boolean excludeLatest) {
         try {
-            // 直接构造查询条件，起始点为 1 而不是 0，用于排除最新的用户消息
+            int skip = excludeLatest ? 1 : 0;
             QueryWrapper queryWrapper = QueryWrapper.create()
+                    .select(ChatHistory::getId, ChatHistory::getMessage, ChatHistory::getMessageCompressed,
+                            ChatHistory::getMessageType, ChatHistory::getCreateTime)
                     .eq(ChatHistory::getAppId, appId)
                     .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
-            List<ChatHistory> historyList = this.list(queryWrapper);
-            if (CollUtil.isEmpty(historyList)) {
-                return 0;
-            }
-            // 反转列表，确保按时间正序（老的在前，新的在后）
-            historyList = historyList.reversed();
-            // 按时间顺序添加到记忆中
-            int loadedCount = 0;
-            // 先清理历史缓存，防止重复加载
-            chatMemory.clear();
+                    .orderBy(ChatHistory::getId, false)
+                    .limit(skip + maxCount);
+            List<ChatHistory> pendingList = chatHistoryWriteBehind.pendingFor(appId);
+            List<ChatHistory> historyList = mergePending(
+                    chatHistoryShardRouter.read(appId, () -> this.list(queryWrapper)), pendingList);
+            historyList = historyList.subList(Math.min(skip, historyList.size()),
+                    Math.min(skip + maxCount, historyList.size()));
+            List<ChatMessage> messages = toChatMessages(historyList.reversed());
+            log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, messages.size());
+            return messages;
+        } catch (Exception e) {
+            log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 批量加载多个应用最近的对话历史（包含最新一条消息），每张物理表一次查询（分表后并行），用于启动后预热对话记忆
+     *
+     * @param appIds   应用 ID
+     * @param maxCount 每个应用的最大消息数
+     * @return appId -> 按时间正序排列的消息，没有历史的应用不在结果中
+     */
+    @Override
+    public Map<Long, List<ChatMessage>> batchLoadChatHistoryMessages(Collection<Long> appIds, int maxCount) {
+        Map<Long, List<ChatMessage>> result = new HashMap<>();
+        if (CollUtil.isEmpty(appIds)) {
+            return result;
+        }
+        Map<String, List<Long>> appIdsByTable = chatHistoryShardRouter.groupByReadTable(appIds, appId -> appId);
+        List<List<ChatHistory>> shardResults = chatHistoryShardRouter.scatter(appIdsByTable.keySet(),
+                table -> this.mapper.selectRecentMessages(table, appIdsByTable.get(table), maxCount));
+        for (List<ChatHistory> historyList : shardResults) {
             for (ChatHistory history : historyList) {
-                if (ChatHistoryMessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(UserMessage.from(history.getMessage()));
-                    loadedCount++;
-                } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(AiMessage.from(history.getMessage()));
-                    loadedCount++;
+                ChatMessage message = toChatMessage(history);
+                if (message != null) {
+                    result.computeIfAbsent(history.getAppId(), key -> new ArrayList<>()).add(message);
                 }
             }
-            log.info("成功为 appId: {} 加载了 {} 条历史对话", appId, loadedCount);
-            return loadedCount;
-        } catch (Exception e) {
-            log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
-            // 加载失败不影响系统运行，只是没有历史上下文
-            return 0;
         }
+        return result;
+    }
+
+    /**
+     * 最近有对话的应用
+     *
+     * @param since 起始时间
+     * @param limit 最大数量
+     * @return 按最近对话时间倒序排列的应用 ID
+     */
+    @Override
+    public List<Long> listRecentlyActiveAppIds(LocalDateTime since, int limit) {
+        // 每张表取前 limit 个，合并后再取前 limit 个（同一应用只在一张表中）
+        List<List<ChatHistory>> shardResults = chatHistoryShardRouter.scatter(chatHistoryShardRouter.readTables(),
+                table -> this.mapper.selectRecentlyActiveApps(table, since, limit));
+        return shardResults.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(ChatHistory::getCreateTime).reversed())
+                .limit(limit)
+                .map(ChatHistory::getAppId)
+                .toList();
+    }
+
+    /**
+     * 管理员分页查询所有对话历史
+     * 指定 appId 时只查询其所在的物理表；否则分表后在每张表上并行查询前 pageNum * pageSize 条并统计总数，
+     * 按相同的排序合并后截取本页，翻页越深每张表需要返回的行越多，只适合管理后台的浅分页
+     *
+     * @param chatHistoryQueryRequest 查询请求
+     * @return 对话历史分页，按指定字段排序（默认按创建时间倒序）
+     */
+    @Override
+    public Page<ChatHistory> listAllChatHistoryByPageForAdmin(ChatHistoryQueryRequest chatHistoryQueryRequest) {
+        long pageNum = chatHistoryQueryRequest.getPageNum();
+        long pageSize = chatHistoryQueryRequest.getPageSize();
+        ThrowUtils.throwIf(pageNum <= 0 || pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "分页参数错误");
+        QueryWrapper queryWrapper = this.getQueryWrapper(chatHistoryQueryRequest)
+                .orderBy(ChatHistory::getCreateTime, false)
+                .orderBy(ChatHistory::getId, false);
+        Long appId = chatHistoryQueryRequest.getAppId();
+        List<String> tables = appId != null
+                ? List.of(chatHistoryShardRouter.readTable(appId))
+                : chatHistoryShardRouter.readTables();
+        if (tables.size() == 1) {
+            return chatHistoryShardRouter.onTable(tables.getFirst(),
+                    () -> this.page(Page.of(pageNum, pageSize), queryWrapper));
+        }
+        Comparator<ChatHistory> order = adminOrder(chatHistoryQueryRequest);
+        long limit = pageNum * pageSize;
+        List<Page<ChatHistory>> shardPages = chatHistoryShardRouter.scatter(tables, table -> {
+            Page<ChatHistory> shardPage = new Page<>();
+            shardPage.setTotalRow(this.count(queryWrapper.clone()));
+            shardPage.setRecords(shardPage.getTotalRow() > 0
+                    ? this.list(queryWrapper.clone().limit(limit))
+                    : new ArrayList<>());
+            return shardPage;
+        });
+        List<ChatHistory> merged = shardPages.stream()
+                .flatMap(shardPage -> shardPage.getRecords().stream())
+                .sorted(order)
+                .skip((pageNum - 1) * pageSize)
+                .limit(pageSize)
+                .toList();
+        long totalRow = shardPages.stream().mapToLong(Page::getTotalRow).sum();
+        return new Page<>(merged, pageNum, pageSize, totalRow);
+    }
+
+    /**
+     * 与 SQL 相同的排序，用于合并各分表的结果：先按指定字段（升序时 NULL 在前，与 MySQL 一致），再按创建时间、ID 倒序
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<ChatHistory> adminOrder(ChatHistoryQueryRequest chatHistoryQueryRequest) {
+        String sortField = chatHistoryQueryRequest.getSortField();
+        if (StrUtil.isBlank(sortField)) {
+            return NEWEST_FIRST;
+        }
+        Field field = ReflectUtil.getField(ChatHistory.class, sortField);
+        ThrowUtils.throwIf(field == null || !Comparable.class.isAssignableFrom(field.getType()), ErrorCode.PARAMS_ERROR,
+                "不支持的排序字段: " + sortField);
+        Comparator<ChatHistory> byField = Comparator.comparing(
+                history -> (Comparable) BeanUtil.getFieldValue(history, sortField),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+        if (!"ascend".equals(chatHistoryQueryRequest.getSortOrder())) {
+            byField = byField.reversed();
+        }
+        return byField.thenComparing(NEWEST_FIRST);
+    }
+
+    private List<ChatMessage> toChatMessages(List<ChatHistory> historyList) {
+        List<ChatMessage> messages = new ArrayList<>(historyList.size());
+        for (ChatHistory history : historyList) {
+            ChatMessage message = toChatMessage(history);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private ChatMessage toChatMessage(ChatHistory history) {
+        if (ChatHistoryMessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
+            return UserMessage.from(history.getMessage());
+        }
+        if (ChatHistoryMessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
+            return AiMessage.from(history.getMessage());
+        }
+        return null;
     }
 
 
@@ -58,4 +58,14 @@ public interface StreamingChatResponseHandler {
      * @param error The error that occurred
      */
     void onError(Throwable error);
+
+    /**
+     * Returns the handle used to cancel the streaming call, or {@code null} if the call cannot be cancelled.
+     * Models that support cancellation stop streaming and release the connection once the handle is cancelled.
+     *
+     * @return the streaming handle, or {@code null}
+     */
+    default StreamingHandle streamingHandle() {
+        return null;
+    }
 }
@@ -0,0 +1,54 @@
+package dev.langchain4j.model.chat.response;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handle to an ongoing streaming call that allows it to be cancelled from another thread.
+ * <p>
+ * Cancelling closes the underlying HTTP response stream (when the model supports it),
+ * stops delivering partial responses and prevents any further tool executions or follow-up requests.
+ *
+ * @see StreamingChatResponseHandler#streamingHandle()
+ */
+public class StreamingHandle {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<Runnable> cancellationCallbacks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Cancels the streaming call. Subsequent invocations have no effect.
+     */
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            for (Runnable callback : cancellationCallbacks) {
+                runOnce(callback);
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Registers a callback (e.g. closing an HTTP response stream) to be run on cancellation.
+     * If the handle is already cancelled, the callback is run immediately.
+     *
+     * @param callback the callback to run on cancellation
+     */
+    public void onCancel(Runnable callback) {
+        cancellationCallbacks.add(callback);
+        if (cancelled.get()) {
+            runOnce(callback);
+        }
+    }
+
+    private void runOnce(Runnable callback) {
+        // removal decides which thread runs the callback when cancel() and onCancel() race
+        if (cancellationCallbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Decorates an {@link HttpClientBuilder} so that streaming requests can be aborted through a {@link StreamingHandle}.
+ * <p>
+ * The handle of the current streaming call is bound to the calling thread while the request is being sent
+ * (see {@link #withHandle(StreamingHandle, Runnable)}); cancelling it closes the HTTP response stream,
+ * which makes the server-sent event parser stop and releases the connection.
+ */
+class CancellableHttpClientBuilder implements HttpClientBuilder {
+
+    private static final ThreadLocal<StreamingHandle> CURRENT_HANDLE = new ThreadLocal<>();
+
+    private final HttpClientBuilder delegate;
+
+    CancellableHttpClientBuilder(HttpClientBuilder delegate) {
+        this.delegate = ensureNotNull(delegate, "delegate");
+    }
+
+    /**
+     * Runs the given action with the handle bound to the current thread.
+     */
+    static void withHandle(StreamingHandle handle, Runnable action) {
+        StreamingHandle previous = CURRENT_HANDLE.get();
+        CURRENT_HANDLE.set(handle);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CURRENT_HANDLE.remove();
+            } else {
+                CURRENT_HANDLE.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public Duration connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration timeout) {
+        delegate.connectTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return delegate.readTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration timeout) {
+        delegate.readTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        return new CancellableHttpClient(delegate.build());
+    }
+
+    private static class CancellableHttpClient implements HttpClient {
+
+        private final HttpClient delegate;
+
+        private CancellableHttpClient(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public SuccessfulHttpResponse execute(HttpRequest request) {
+            return delegate.execute(request);
+        }
+
+        @Override
+        public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+            StreamingHandle handle = CURRENT_HANDLE.get();
+            if (handle == null) {
+                delegate.execute(request, parser, listener);
+                return;
+            }
+            // the parser may run on another thread, so the handle is captured here
+            delegate.execute(request, (inputStream, parserListener) -> {
+                handle.onCancel(() -> closeQuietly(inputStream));
+                if (!handle.isCancelled()) {
+                    parser.parse(inputStream, parserListener);
+                }
+            }, listener);
+        }
+
+        private static void closeQuietly(InputStream inputStream) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+                // the stream is being abandoned anyway
+            }
+        }
+    }
+}
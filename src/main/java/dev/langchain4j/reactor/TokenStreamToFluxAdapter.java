@@ -0,0 +1,37 @@
+package dev.langchain4j.reactor;
+
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.spi.services.TokenStreamAdapter;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Adapts {@link TokenStream} to {@code Flux<String>}.
+ * <p>
+ * The stream is started when the flux is subscribed to, and cancelling the subscription
+ * cancels the stream (see {@link TokenStream#cancel()}), so a disconnected client stops the request to LLM.
+ */
+public class TokenStreamToFluxAdapter implements TokenStreamAdapter {
+
+    @Override
+    public boolean canAdaptTokenStreamTo(Type type) {
+        if (type instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == Flux.class) {
+            Type[] typeArguments = parameterizedType.getActualTypeArguments();
+            return typeArguments.length == 1 && typeArguments[0] == String.class;
+        }
+        return false;
+    }
+
+    @Override
+    public Object adapt(TokenStream tokenStream) {
+        return Flux.<String>create(sink -> {
+            tokenStream.onPartialResponse(sink::next)
+                    .onCompleteResponse(ignored -> sink.complete())
+                    .onError(sink::error);
+            sink.onCancel(tokenStream::cancel);
+            tokenStream.start();
+        });
+    }
+}
@@ -80,4 +80,12 @@ public interface TokenStream {
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the stream: the ongoing request to LLM is aborted, no more partial responses are delivered
+     * and no further tools are executed. None of the handlers is invoked as a result of cancellation.
+     * Has no effect if the stream has already completed.
+     */
+    default void cancel() {
+    }
 }
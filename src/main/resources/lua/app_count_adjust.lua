@@ -0,0 +1,8 @@
+-- 调整应用数量缓存：只调整已存在的计数，不存在的计数在下次查询时重新统计
+-- 每次只处理一个键，各计数键可以分布在 Redis Cluster 的不同槽位
+-- KEYS[1]: 计数键
+-- ARGV[1]: 增量
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return redis.call('INCRBY', KEYS[1], tonumber(ARGV[1]))
+end
+return 0
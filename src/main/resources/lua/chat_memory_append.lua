@@ -0,0 +1,61 @@
+-- 对话记忆增量写入：按更新计划删除、替换和追加消息，消息列表和摘要列表一次往返内同时修改
+-- KEYS[1]: 消息列表  KEYS[2]: 消息摘要列表  KEYS[3]: 版本号
+-- ARGV[1]: 预期的当前版本号（-1 表示不检查）  ARGV[2]: 保留的开头消息数（-1 表示全量重写）  ARGV[3]: 保留的开头之后删除的消息数
+-- ARGV[4]: 新窗口的消息数  ARGV[5]: 过期时间（秒，0 表示不过期）  ARGV[6]: 替换数 m  ARGV[7]: 追加数 n
+-- ARGV[8 .. 7+3m]: 每个替换的下标、消息、摘要  随后 n 条追加的消息和 n 条追加的摘要
+-- 返回写入后的版本号，0 表示当前版本号与预期不一致（读取后被并发修改），更新计划已失效
+local expected = ARGV[1]
+local keep = tonumber(ARGV[2])
+local drop = tonumber(ARGV[3])
+local size = tonumber(ARGV[4])
+local ttl = tonumber(ARGV[5])
+local sets = tonumber(ARGV[6])
+local count = tonumber(ARGV[7])
+
+if expected ~= '-1' and (redis.call('GET', KEYS[3]) or '0') ~= expected then
+    return 0
+end
+
+if keep >= 0 then
+    for k = 1, 2 do
+        if drop > 0 then
+            -- 删除保留的开头之后的消息：取出开头，裁掉开头和删除的部分后再写回开头
+            local head = {}
+            if keep > 0 then
+                head = redis.call('LRANGE', KEYS[k], 0, keep - 1)
+            end
+            redis.call('LTRIM', KEYS[k], keep + drop, -1)
+            for i = #head, 1, -1 do
+                redis.call('LPUSH', KEYS[k], head[i])
+            end
+        end
+        redis.call('LTRIM', KEYS[k], 0, size - 1)
+    end
+    for j = 0, sets - 1 do
+        local base = 8 + 3 * j
+        local index = tonumber(ARGV[base])
+        redis.call('LSET', KEYS[1], index, ARGV[base + 1])
+        redis.call('LSET', KEYS[2], index, ARGV[base + 2])
+    end
+else
+    redis.call('DEL', KEYS[1], KEYS[2])
+end
+
+local offset = 8 + 3 * sets
+if count > 0 then
+    redis.call('RPUSH', KEYS[1], unpack(ARGV, offset, offset + count - 1))
+    redis.call('RPUSH', KEYS[2], unpack(ARGV, offset + count, offset + 2 * count - 1))
+end
+
+-- 版本号取 Redis 服务器时间（微秒），并保证严格递增，版本号键过期后也不会回退
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+local version = math.max(now, (tonumber(redis.call('GET', KEYS[3])) or 0) + 1)
+redis.call('SET', KEYS[3], string.format('%d', version))
+
+if ttl > 0 then
+    redis.call('EXPIRE', KEYS[1], ttl)
+    redis.call('EXPIRE', KEYS[2], ttl)
+    redis.call('EXPIRE', KEYS[3], ttl)
+end
+return version
@@ -0,0 +1,37 @@
+-- 令牌桶限流：所有桶都有足够令牌时才同时扣减，一次往返完成检查和扣减
+-- KEYS: 令牌桶键
+-- ARGV[1]: 桶容量  ARGV[2]: 每秒补充令牌数  ARGV[3]: 本次申请令牌数  ARGV[4]: 键过期时间（毫秒）
+-- 返回 0 表示放行，否则返回需要等待的毫秒数
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local ttl = tonumber(ARGV[4])
+-- 使用 Redis 服务器时间，避免多个实例之间的时钟偏差
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local tokens = {}
+local allowed = true
+for i, key in ipairs(KEYS) do
+    local bucket = redis.call('HMGET', key, 'tokens', 'ts')
+    local current = tonumber(bucket[1]) or capacity
+    local last = tonumber(bucket[2]) or now
+    current = math.min(capacity, current + math.max(0, now - last) * rate / 1000)
+    tokens[i] = current
+    if current < requested then
+        allowed = false
+    end
+end
+
+local wait = 0
+for i, key in ipairs(KEYS) do
+    local current = tokens[i]
+    if allowed then
+        current = current - requested
+    elseif current < requested then
+        wait = math.max(wait, math.ceil((requested - current) * 1000 / rate))
+    end
+    redis.call('HSET', key, 'tokens', tostring(current), 'ts', now)
+    redis.call('PEXPIRE', key, ttl)
+end
+return wait
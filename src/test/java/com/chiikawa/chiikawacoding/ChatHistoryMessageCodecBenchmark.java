@@ -0,0 +1,134 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryMessageCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话消息压缩基准测试
+ * 对比直接按 UTF-8 读写（未压缩存储）与压缩编解码在 4KB ~ 128KB 对话记录上的耗时，并输出存储节省比例
+ * <p>
+ * 运行：先 mvn test-compile，再在 IDE 中运行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatHistoryMessageCodecBenchmark {
+
+    /**
+     * 对话记录类型：multiFile 为原生多文件模式的 AI 回复，vueProject 为 Vue 工程模式的工具调用记录
+     */
+    @Param({"multiFile", "vueProject"})
+    private String transcript;
+
+    /**
+     * 对话记录大小（KB）
+     */
+    @Param({"4", "32", "128"})
+    private int sizeKb;
+
+    private String message;
+
+    private byte[] utf8;
+
+    private byte[] compressed;
+
+    @Setup
+    public void setUp() {
+        message = "vueProject".equals(transcript)
+                ? buildVueProjectTranscript(sizeKb * 1024)
+                : buildMultiFileTranscript(sizeKb * 1024);
+        utf8 = message.getBytes(StandardCharsets.UTF_8);
+        compressed = ChatHistoryMessageCodec.encode(message);
+        System.out.printf("%n%s %dKB: 原始 %d 字节，压缩后 %d 字节，节省 %.1f%%%n", transcript, sizeKb,
+                utf8.length, compressed.length, 100.0 * (utf8.length - compressed.length) / utf8.length);
+    }
+
+    @Benchmark
+    public byte[] writeUncompressed() {
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeCompressed() {
+        return ChatHistoryMessageCodec.encode(message);
+    }
+
+    @Benchmark
+    public String readUncompressed() {
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String readCompressed() {
+        return ChatHistoryMessageCodec.decode(compressed);
+    }
+
+    /**
+     * 原生多文件模式的 AI 回复：说明文字 + html / css / javascript 三个代码块
+     */
+    private static String buildMultiFileTranscript(int targetSize) {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; html.length() < targetSize / 2; i++) {
+            html.append("    <section class=\"card\" id=\"card-").append(i).append("\">\n")
+                    .append("        <h2 class=\"card-title\">任务 ").append(i).append("</h2>\n")
+                    .append("        <p class=\"card-desc\">记录今天要完成的第 ").append(i).append(" 件事，完成后点击勾选。</p>\n")
+                    .append("        <button class=\"btn\" data-index=\"").append(i).append("\">完成</button>\n")
+                    .append("    </section>\n");
+        }
+        StringBuilder css = new StringBuilder();
+        for (int i = 0; css.length() < targetSize / 4; i++) {
+            css.append("#card-").append(i).append(" {\n")
+                    .append("    display: flex;\n    padding: ").append(8 + i % 16).append("px;\n")
+                    .append("    border-radius: 8px;\n    color: #").append(Integer.toHexString(0x333333 + i * 17)).append(";\n}\n");
+        }
+        StringBuilder js = new StringBuilder();
+        for (int i = 0; js.length() < targetSize / 4; i++) {
+            js.append("document.getElementById('card-").append(i).append("').addEventListener('click', () => {\n")
+                    .append("    localStorage.setItem('task-").append(i).append("', 'done');\n});\n");
+        }
+        return "下面是为你生成的任务记录网站，包含 HTML、CSS 和 JavaScript 三个文件。\n\n"
+                + "index.html\n```html\n<!DOCTYPE html>\n<html>\n<body>\n" + html + "</body>\n</html>\n```\n\n"
+                + "style.css\n```css\n" + css + "```\n\n"
+                + "script.js\n```javascript\n" + js + "```\n\n"
+                + "以上代码可以直接在浏览器中打开使用。\n";
+    }
+
+    /**
+     * Vue 工程模式的对话记录：多个「[工具调用] 写入文件」及其代码块
+     */
+    private static String buildVueProjectTranscript(int targetSize) {
+        StringBuilder transcript = new StringBuilder("好的，我来为你创建一个博客网站，使用 Vue 3 + Vite。\n\n");
+        for (int file = 0; transcript.length() < targetSize; file++) {
+            transcript.append("\n\n[选择工具] 写入文件\n\n");
+            transcript.append("[工具调用] 写入文件 src/components/Post").append(file).append(".vue\n```vue\n");
+            transcript.append("<template>\n  <article class=\"post\">\n    <h2>{{ title }}</h2>\n");
+            for (int line = 0; line < 20; line++) {
+                transcript.append("    <p class=\"paragraph-").append(line).append("\">{{ paragraphs[")
+                        .append(line).append("] }}</p>\n");
+            }
+            transcript.append("  </article>\n</template>\n\n<script setup>\nimport { ref } from 'vue'\n\n")
+                    .append("const title = ref('第 ").append(file).append(" 篇文章')\n")
+                    .append("const paragraphs = ref(Array.from({ length: 20 }, (_, i) => `段落 ${i}`))\n</script>\n\n")
+                    .append("<style scoped>\n.post {\n  margin: ").append(file % 5 * 4).append("px auto;\n")
+                    .append("  max-width: 720px;\n}\n</style>\n```\n");
+        }
+        return transcript.append("\n\n项目已创建完成，运行 npm install 和 npm run dev 即可预览。\n").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ChatHistoryMessageCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,53 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryCompressor;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryMessageCodec;
+import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatHistoryMessageCodecTest {
+
+    @Test
+    void roundTrip() {
+        String message = "[工具调用] 写入文件 src/App.vue\n```vue\n<template>\n  <div>你好 👋</div>\n</template>\n```\n"
+                .repeat(200);
+        byte[] encoded = ChatHistoryMessageCodec.encode(message);
+        assertEquals(ChatHistoryMessageCodec.CODEC_DEFLATE, encoded[0]);
+        assertTrue(encoded.length < message.length() / 10);
+        assertEquals(message, ChatHistoryMessageCodec.decode(encoded));
+        assertEquals("", ChatHistoryMessageCodec.decode(ChatHistoryMessageCodec.encode("")));
+    }
+
+    @Test
+    void rejectUnknownOrTruncatedData() {
+        byte[] encoded = ChatHistoryMessageCodec.encode("hello world ".repeat(100));
+        assertThrows(IllegalArgumentException.class, () -> ChatHistoryMessageCodec.decode(new byte[]{9, 1, 2}));
+        assertThrows(IllegalArgumentException.class,
+                () -> ChatHistoryMessageCodec.decode(Arrays.copyOf(encoded, encoded.length / 2)));
+    }
+
+    @Test
+    void storageFormKeepsSearchablePrefix() {
+        String message = "生成一个待办应用 👋 " + "x".repeat(2000);
+        byte[] encoded = ChatHistoryMessageCodec.encode(message);
+        ChatHistory chatHistory = new ChatHistory();
+        chatHistory.setMessage(message);
+
+        // 写入数据库的形式：message 为明文前缀（不截断代理对），读取时不能被解压覆盖
+        ChatHistory stored = ChatHistoryCompressor.toStorageForm(chatHistory, encoded, 10);
+        assertEquals("生成一个待办应用 ", stored.getMessage());
+        assertEquals(message, chatHistory.getMessage());
+
+        // 从数据库查出的行：按需解压出完整内容
+        ChatHistory loaded = new ChatHistory();
+        loaded.setMessage(stored.getMessage());
+        loaded.setMessageCompressed(stored.getMessageCompressed());
+        assertEquals(message, loaded.getMessage());
+    }
+}
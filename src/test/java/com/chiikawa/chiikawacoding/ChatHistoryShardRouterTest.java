@@ -0,0 +1,36 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryShardRouter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatHistoryShardRouterTest {
+
+    @Test
+    void shardIndexIsStableAndInRange() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long appId = random.nextLong();
+            int index = ChatHistoryShardRouter.shardIndex(appId, 16);
+            assertTrue(index >= 0 && index < 16);
+            assertEquals(index, ChatHistoryShardRouter.shardIndex(appId, 16));
+        }
+    }
+
+    @Test
+    void snowflakeIdsSpreadEvenly() {
+        // 雪花 ID 同一毫秒内只有低位序列号不同，低位大多为 0
+        int[] counts = new int[16];
+        long firstId = 1_900_000_000_000_000_000L;
+        for (int i = 0; i < 16000; i++) {
+            counts[ChatHistoryShardRouter.shardIndex(firstId + ((long) i << 22), 16)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 800 && count < 1200, "分布不均: " + count);
+        }
+    }
+}
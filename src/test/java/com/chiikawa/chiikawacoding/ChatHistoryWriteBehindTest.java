@@ -0,0 +1,310 @@
+package com.chiikawa.chiikawacoding;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.chiikawa.chiikawacoding.config.ChatHistoryCompressionConfig;
+import com.chiikawa.chiikawacoding.config.ChatHistoryShardingConfig;
+import com.chiikawa.chiikawacoding.config.ChatHistoryWriteBehindConfig;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryCompressor;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryShardRouter;
+import com.chiikawa.chiikawacoding.core.history.ChatHistoryWriteBehind;
+import com.chiikawa.chiikawacoding.mapper.ChatHistoryMapper;
+import com.chiikawa.chiikawacoding.model.entity.ChatHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatHistoryWriteBehindTest {
+
+    private static final long APP_A = 1L;
+
+    private static final long APP_B = 2L;
+
+    @TempDir
+    Path journalDir;
+
+    /**
+     * 模拟崩溃：复制日志分段到另一个目录重放
+     */
+    @TempDir
+    Path crashDir;
+
+    private ChatHistoryShardRouter shardRouter;
+
+    private final List<ChatHistoryWriteBehind> started = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        shardRouter = new ChatHistoryShardRouter();
+        ReflectionTestUtils.setField(shardRouter, "chatHistoryShardingConfig", new ChatHistoryShardingConfig());
+        shardRouter.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (ChatHistoryWriteBehind writeBehind : started) {
+            writeBehind.shutdown();
+        }
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void recoverIgnoresTornLastLine() throws Exception {
+        String torn = JSONUtil.toJsonStr(message(3L, APP_A));
+        writeSegment("0-000000.journal", JSONUtil.toJsonStr(message(1L, APP_A)) + "\n"
+                + JSONUtil.toJsonStr(message(2L, APP_B)) + "\n"
+                + torn.substring(0, torn.length() / 2));
+        StubMapper mapper = new StubMapper();
+
+        ChatHistoryWriteBehind writeBehind = start(mapper, config());
+
+        assertEquals(List.of(1L, 2L), mapper.insertedIds());
+        // 重放完成后旧分段删除，只剩当前分段
+        assertEquals(1, journalFiles().size());
+        writeBehind.shutdown();
+        assertEquals(0, journalFiles().size());
+    }
+
+    @Test
+    void recoverSkipsDiscardedRecordsInLaterSegments() throws Exception {
+        writeSegment("0-000000.journal", JSONUtil.toJsonStr(message(1L, APP_A)) + "\n"
+                + JSONUtil.toJsonStr(message(2L, APP_B)) + "\n");
+        writeSegment("0-000001.journal", tombstone(APP_A, 1L) + "\n"
+                + JSONUtil.toJsonStr(message(3L, APP_A)) + "\n");
+        StubMapper mapper = new StubMapper();
+
+        start(mapper, config());
+
+        assertEquals(List.of(2L, 3L), mapper.insertedIds());
+    }
+
+    @Test
+    void recoverDoesNotInsertRowsAlreadyStored() throws Exception {
+        writeSegment("0-000000.journal", JSONUtil.toJsonStr(message(1L, APP_A)) + "\n"
+                + JSONUtil.toJsonStr(message(2L, APP_A)) + "\n");
+        StubMapper mapper = new StubMapper();
+        // 崩溃前已经插入成功，但日志还没来得及删除
+        mapper.insertBatch(List.of(message(1L, APP_A)));
+
+        start(mapper, config());
+
+        assertEquals(List.of(1L, 2L), mapper.insertedIds());
+    }
+
+    @Test
+    void retryAfterCommittedInsertDoesNotDuplicate() throws Exception {
+        StubMapper mapper = new StubMapper();
+        // 插入已提交但调用方收到异常（如提交后连接断开）
+        mapper.failAfterCommit = 1;
+        ChatHistoryWriteBehind writeBehind = start(mapper, config());
+
+        ChatHistory chatHistory = message(null, APP_A);
+        writeBehind.append(chatHistory);
+        await(() -> writeBehind.pendingFor(APP_A).isEmpty());
+
+        // 重试时先查出已插入的记录，不再插入
+        assertEquals(List.of(chatHistory.getId()), mapper.insertedIds());
+        assertEquals(1, mapper.insertCalls);
+        assertEquals(1, mapper.selectCalls);
+    }
+
+    @Test
+    void discardedRecordsAreNotReplayedAfterCrash() throws Exception {
+        StubMapper mapper = new StubMapper();
+        mapper.down = true;
+        ChatHistoryWriteBehind writeBehind = start(mapper, config());
+
+        writeBehind.append(message(null, APP_A));
+        writeBehind.append(message(null, APP_A));
+        ChatHistory kept = message(null, APP_B);
+        writeBehind.append(kept);
+        writeBehind.discard(APP_A);
+
+        assertTrue(writeBehind.pendingFor(APP_A).isEmpty());
+        assertEquals(1, writeBehind.pendingFor(APP_B).size());
+
+        // 数据库一直不可用，停止时 APP_B 的消息仍在日志中，由下次启动重放
+        writeBehind.shutdown();
+        StubMapper recovered = new StubMapper();
+        start(recovered, config());
+
+        assertEquals(List.of(kept.getId()), recovered.insertedIds());
+    }
+
+    @Test
+    void tombstoneSegmentOutlivesSegmentsItRefersTo() throws Exception {
+        StubMapper mapper = new StubMapper();
+        mapper.down = true;
+        ChatHistoryWriteBehindConfig config = config();
+        ChatHistoryWriteBehind writeBehind = start(mapper, config);
+
+        // 第一个分段：APP_A、APP_B 各一条
+        ChatHistory kept = message(null, APP_B);
+        writeBehind.append(message(null, APP_A));
+        writeBehind.append(kept);
+        // 之后每行都切换到新分段：丢弃记录在第二个分段，第三个分段是新消息
+        config.setJournalSegmentBytes(1);
+        writeBehind.discard(APP_A);
+        ChatHistory later = message(null, APP_B);
+        writeBehind.append(later);
+
+        // 第二个分段中已没有待写入的消息，但第一个分段还在，丢弃记录不能删除
+        assertEquals(3, journalFiles().size());
+        for (Path segment : journalFiles()) {
+            Files.copy(segment, crashDir.resolve(segment.getFileName()));
+        }
+        StubMapper recovered = new StubMapper();
+        ChatHistoryWriteBehindConfig crashConfig = config();
+        crashConfig.setJournalDir(crashDir.toString());
+        start(recovered, crashConfig);
+        assertEquals(List.of(kept.getId(), later.getId()), recovered.insertedIds());
+
+        // 数据库恢复后第一个分段落库删除，丢弃记录所在的分段随之删除，只剩当前分段
+        mapper.down = false;
+        await(() -> writeBehind.pendingFor(APP_B).isEmpty());
+        assertEquals(1, journalFiles().size());
+    }
+
+    private ChatHistoryWriteBehind start(StubMapper mapper, ChatHistoryWriteBehindConfig config) throws IOException {
+        ChatHistoryMapper chatHistoryMapper = mapper.proxy();
+        ChatHistoryCompressor compressor = new ChatHistoryCompressor();
+        ReflectionTestUtils.setField(compressor, "chatHistoryCompressionConfig", new ChatHistoryCompressionConfig());
+        ChatHistoryWriteBehind writeBehind = new ChatHistoryWriteBehind();
+        ReflectionTestUtils.setField(writeBehind, "chatHistoryWriteBehindConfig", config);
+        ReflectionTestUtils.setField(writeBehind, "chatHistoryMapper", chatHistoryMapper);
+        ReflectionTestUtils.setField(writeBehind, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writeBehind, "chatHistoryCompressor", compressor);
+        ReflectionTestUtils.setField(writeBehind, "chatHistoryShardRouter", shardRouter);
+        writeBehind.init();
+        started.add(writeBehind);
+        return writeBehind;
+    }
+
+    private ChatHistoryWriteBehindConfig config() {
+        ChatHistoryWriteBehindConfig config = new ChatHistoryWriteBehindConfig();
+        config.setJournalDir(journalDir.toString());
+        config.setFlushInterval(Duration.ofMillis(10));
+        config.setRetryInterval(Duration.ofMillis(20));
+        return config;
+    }
+
+    private static ChatHistory message(Long id, long appId) {
+        ChatHistory chatHistory = new ChatHistory();
+        chatHistory.setId(id);
+        chatHistory.setAppId(appId);
+        chatHistory.setUserId(100L);
+        chatHistory.setMessageType("user");
+        chatHistory.setMessage("消息 " + id);
+        chatHistory.setCreateTime(LocalDateTime.now().withNano(0));
+        chatHistory.setIsDelete(0);
+        return chatHistory;
+    }
+
+    private static String tombstone(long appId, Long... ids) {
+        JSONObject tombstone = new JSONObject();
+        tombstone.set("discardAppId", appId);
+        tombstone.set("discardIds", List.of(ids));
+        return tombstone.toString();
+    }
+
+    private void writeSegment(String fileName, String content) throws IOException {
+        Files.writeString(journalDir.resolve(fileName), content, StandardCharsets.UTF_8);
+    }
+
+    private List<Path> journalFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 内存中的对话历史表，只实现写入和按 ID 查询已存在记录
+     */
+    private static class StubMapper {
+
+        private final List<Long> inserted = Collections.synchronizedList(new ArrayList<>());
+
+        /**
+         * 数据库不可用，插入直接失败
+         */
+        private volatile boolean down;
+
+        /**
+         * 接下来几次插入在提交后抛出异常
+         */
+        private volatile int failAfterCommit;
+
+        private volatile int insertCalls;
+
+        private volatile int selectCalls;
+
+        private List<Long> insertedIds() {
+            synchronized (inserted) {
+                return List.copyOf(inserted);
+            }
+        }
+
+        private void insertBatch(Collection<ChatHistory> rows) {
+            insertCalls++;
+            if (down) {
+                throw new IllegalStateException("数据库不可用");
+            }
+            rows.forEach(row -> inserted.add(row.getId()));
+            if (failAfterCommit > 0) {
+                failAfterCommit--;
+                throw new IllegalStateException("提交后连接断开");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private ChatHistoryMapper proxy() {
+            return (ChatHistoryMapper) Proxy.newProxyInstance(ChatHistoryMapper.class.getClassLoader(),
+                    new Class<?>[]{ChatHistoryMapper.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "insertBatch" -> {
+                            insertBatch((Collection<ChatHistory>) args[0]);
+                            yield ((Collection<?>) args[0]).size();
+                        }
+                        // 返回全部已插入的 ID，调用方只用来判断是否存在
+                        case "selectObjectListByQueryAs" -> {
+                            selectCalls++;
+                            if (down) {
+                                throw new IllegalStateException("数据库不可用");
+                            }
+                            yield insertedIds();
+                        }
+                        case "toString" -> "StubMapper";
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
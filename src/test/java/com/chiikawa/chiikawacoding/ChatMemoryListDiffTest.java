@@ -0,0 +1,90 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.ai.memory.ChatMemoryListDiff;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMemoryListDiffTest {
+
+    @Test
+    void appendNewTurn() {
+        ChatMemoryListDiff diff = assertApplies(List.of("S", "u1", "a1"), List.of("S", "u1", "a1", "u2", "a2"));
+        assertEquals(2, diff.getWriteCount());
+        assertEquals(0, diff.getDrop());
+    }
+
+    @Test
+    void evictTurnAfterPinnedSystemMessage() {
+        ChatMemoryListDiff diff = assertApplies(List.of("S", "u1", "a1", "u2", "a2"), List.of("S", "u2", "a2", "u3", "a3"));
+        // 重新写回系统消息 + 追加新一轮
+        assertEquals(1, diff.getKeep());
+        assertEquals(2, diff.getDrop());
+        assertEquals(3, diff.getWriteCount());
+    }
+
+    @Test
+    void evictTurnFromHead() {
+        ChatMemoryListDiff diff = assertApplies(List.of("u1", "a1", "u2", "a2"), List.of("u2", "a2", "u3", "a3"));
+        assertEquals(0, diff.getKeep());
+        assertEquals(2, diff.getWriteCount());
+    }
+
+    @Test
+    void evictTurnInMiddle() {
+        // 保留最新的代码轮次，淘汰其后较早的普通对话
+        ChatMemoryListDiff diff = assertApplies(List.of("S", "u1", "a1", "u2", "a2", "u3", "a3"),
+                List.of("S", "u1", "a1", "u3", "a3", "u4", "a4"));
+        assertFalse(diff.isFullRewrite());
+        assertTrue(diff.getWriteCount() <= 4);
+    }
+
+    @Test
+    void replacePrunedOlderMessage() {
+        ChatMemoryListDiff diff = assertApplies(List.of("S", "u1", "a1", "u2", "a2"),
+                List.of("S", "u1", "a1'", "u2", "a2", "u3", "a3"));
+        assertEquals(List.of(2), diff.getReplacedIndexes());
+        assertEquals(3, diff.getWriteCount());
+    }
+
+    @Test
+    void evictAndPruneTogether() {
+        ChatMemoryListDiff diff = assertApplies(List.of("S", "u1", "a1", "u2", "a2", "u3", "a3"),
+                List.of("S", "u2", "a2'", "u3", "a3", "u4", "a4"));
+        assertFalse(diff.isFullRewrite());
+        assertEquals(4, diff.getWriteCount());
+    }
+
+    @Test
+    void unrelatedWindowIsRewritten() {
+        assertTrue(assertApplies(List.of("x", "y", "z"), List.of("a", "b")).isFullRewrite());
+        assertTrue(assertApplies(List.of(), List.of("a", "b")).isFullRewrite());
+    }
+
+    /**
+     * 按 chat_memory_append.lua 的步骤执行更新计划，结果必须与新窗口一致
+     */
+    private ChatMemoryListDiff assertApplies(List<String> stored, List<String> target) {
+        ChatMemoryListDiff diff = ChatMemoryListDiff.plan(stored, target);
+        List<String> list = new ArrayList<>();
+        if (!diff.isFullRewrite()) {
+            list.addAll(stored.subList(0, diff.getKeep()));
+            list.addAll(stored.subList(diff.getKeep() + diff.getDrop(), stored.size()));
+            while (list.size() > target.size()) {
+                list.removeLast();
+            }
+            for (int index : diff.getReplacedIndexes()) {
+                list.set(index, target.get(index));
+            }
+        }
+        list.addAll(target.subList(diff.getAppendFrom(), target.size()));
+        assertEquals(target, list);
+        assertTrue(diff.getWriteCount() <= target.size());
+        return diff;
+    }
+}
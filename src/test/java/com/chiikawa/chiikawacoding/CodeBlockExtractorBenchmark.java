@@ -0,0 +1,122 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.ai.model.MultiFileCodeResult;
+import com.chiikawa.chiikawacoding.core.parser.MultiFileCodeParser;
+import com.chiikawa.chiikawacoding.core.parser.StreamingCodeBlockParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 代码块解析基准测试
+ * 对比原三次正则扫描、单次扫描提取器和流式解析器在 5KB ~ 200KB 模型输出上的耗时
+ * <p>
+ * 运行：先 mvn test-compile，再在 IDE 中运行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeBlockExtractorBenchmark {
+
+    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 模型输出大小（KB）
+     */
+    @Param({"5", "50", "200"})
+    private int sizeKb;
+
+    private String content;
+
+    /**
+     * 按模型 token 粒度（约 8 个字符）切分的片段
+     */
+    private List<String> chunks;
+
+    private final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
+
+    @Setup
+    public void setUp() {
+        content = buildModelOutput(sizeKb * 1024);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < content.length(); i += 8) {
+            chunks.add(content.substring(i, Math.min(i + 8, content.length())));
+        }
+    }
+
+    @Benchmark
+    public void regexThreePass(Blackhole blackhole) {
+        blackhole.consume(extractByPattern(content, HTML_CODE_PATTERN));
+        blackhole.consume(extractByPattern(content, CSS_CODE_PATTERN));
+        blackhole.consume(extractByPattern(content, JS_CODE_PATTERN));
+    }
+
+    @Benchmark
+    public MultiFileCodeResult singlePassExtractor() {
+        return multiFileCodeParser.parseCode(content);
+    }
+
+    @Benchmark
+    public void streamingParser(Blackhole blackhole) {
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(blackhole::consume);
+        for (String chunk : chunks) {
+            parser.append(chunk);
+        }
+        parser.finish();
+    }
+
+    private static String extractByPattern(String content, Pattern pattern) {
+        Matcher matcher = pattern.matcher(content);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 构造接近真实的多文件模型输出：说明文字 + html / css / javascript 三个代码块，按 2:1:1 分配大小
+     */
+    private static String buildModelOutput(int targetSize) {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; html.length() < targetSize / 2; i++) {
+            html.append("    <section class=\"card\" id=\"card-").append(i).append("\">\n")
+                    .append("        <h2 class=\"card-title\">任务 ").append(i).append("</h2>\n")
+                    .append("        <p class=\"card-desc\">Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n")
+                    .append("        <img src=\"https://picsum.photos/800/600\" alt=\"Placeholder Image\">\n")
+                    .append("    </section>\n");
+        }
+        StringBuilder css = new StringBuilder();
+        for (int i = 0; css.length() < targetSize / 4; i++) {
+            css.append("#card-").append(i).append(" {\n")
+                    .append("    display: flex;\n    padding: 16px;\n    border-radius: 8px;\n    color: #333;\n}\n");
+        }
+        StringBuilder js = new StringBuilder();
+        for (int i = 0; js.length() < targetSize / 4; i++) {
+            js.append("document.getElementById('card-").append(i).append("').addEventListener('click', () => {\n")
+                    .append("    console.log(`clicked ").append(i).append("`);\n});\n");
+        }
+        return "下面是为你生成的任务记录网站，包含 HTML、CSS 和 JavaScript 三个文件。\n\n"
+                + "index.html\n```html\n<!DOCTYPE html>\n<html>\n<body>\n" + html + "</body>\n</html>\n```\n\n"
+                + "style.css\n```css\n" + css + "```\n\n"
+                + "script.js\n```javascript\n" + js + "```\n\n"
+                + "以上代码可以直接在浏览器中打开使用。\n";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CodeBlockExtractorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
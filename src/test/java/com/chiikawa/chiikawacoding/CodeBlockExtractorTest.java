@@ -0,0 +1,44 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.core.parser.CodeBlock;
+import com.chiikawa.chiikawacoding.core.parser.CodeBlockExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CodeBlockExtractorTest {
+
+    @Test
+    void extract() {
+        String codeContent = """
+                说明文字
+                ```html
+                <h1>Hello</h1>
+                ```
+                ```JS
+                console.log(1);
+                ```
+                结束
+                """;
+        List<CodeBlock> codeBlocks = CodeBlockExtractor.extract(codeContent);
+        assertEquals(2, codeBlocks.size());
+        CodeBlock htmlBlock = codeBlocks.get(0);
+        assertEquals("html", htmlBlock.getLanguage());
+        assertEquals("<h1>Hello</h1>\n", htmlBlock.getCode());
+        // 偏移量指向原始内容中的代码区间
+        assertEquals(htmlBlock.getCode(), codeContent.substring(htmlBlock.getStartOffset(), htmlBlock.getEndOffset()));
+        assertEquals("js", codeBlocks.get(1).getLanguage());
+        assertEquals("console.log(1);\n", CodeBlockExtractor.findFirstCode(codeBlocks, "js", "javascript"));
+        assertNull(CodeBlockExtractor.findFirstCode(codeBlocks, "css"));
+    }
+
+    @Test
+    void extractUnclosedBlock() {
+        List<CodeBlock> codeBlocks = CodeBlockExtractor.extract("```css\nh1 { color: red; }");
+        assertEquals(1, codeBlocks.size());
+        assertEquals("h1 { color: red; }", codeBlocks.get(0).getCode());
+    }
+}
@@ -0,0 +1,78 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.core.parser.CodeBlock;
+import com.chiikawa.chiikawacoding.core.parser.StreamingCodeBlockParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingCodeBlockParserTest {
+
+    private static final String CODE_CONTENT = """
+            创建一个完整的网页：
+            ```html
+            <!DOCTYPE html>
+            <html>
+            <body>
+                <h1>欢迎使用</h1>
+            </body>
+            </html>
+            ```
+            css 格式
+            ```CSS
+            h1 {
+                color: blue;
+            }
+            ```
+            ```javascript
+            console.log('页面加载完成');
+            ```
+            文件创建完成！
+            """;
+
+    @Test
+    void parseChunkedCode() {
+        // 按 3 个字符切分，模拟围栏被拆散在多个片段中
+        List<CodeBlock> blocks = new ArrayList<>();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(blocks::add);
+        for (int i = 0; i < CODE_CONTENT.length(); i += 3) {
+            parser.append(CODE_CONTENT.substring(i, Math.min(i + 3, CODE_CONTENT.length())));
+        }
+        parser.finish();
+        assertEquals(3, blocks.size());
+        assertEquals("html", blocks.get(0).getLanguage());
+        assertTrue(blocks.get(0).getCode().startsWith("<!DOCTYPE html>"));
+        assertTrue(blocks.get(0).getCode().trim().endsWith("</html>"));
+        assertEquals("css", blocks.get(1).getLanguage());
+        assertEquals("h1 {\n    color: blue;\n}\n", blocks.get(1).getCode());
+        assertEquals("javascript", blocks.get(2).getLanguage());
+        assertTrue(parser.getOutsideText().contains("文件创建完成！"));
+    }
+
+    @Test
+    void blockClosedBeforeStreamEnds() {
+        List<CodeBlock> blocks = new ArrayList<>();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(blocks::add);
+        parser.append("```html\n<html></html>\n");
+        assertEquals(0, blocks.size());
+        parser.append("```\n后续说明");
+        // 结束围栏一到达就回调，无需等待流结束
+        assertEquals(1, blocks.size());
+        parser.finish();
+        assertEquals(1, blocks.size());
+    }
+
+    @Test
+    void unclosedBlockFlushedOnFinish() {
+        List<CodeBlock> blocks = new ArrayList<>();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(blocks::add);
+        parser.append("```html\n<html></html>");
+        parser.finish();
+        assertEquals(1, blocks.size());
+        assertEquals("<html></html>", blocks.get(0).getCode());
+    }
+}
@@ -0,0 +1,71 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.ai.memory.SupersededCodePruner;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SupersededCodePrunerTest {
+
+    @Test
+    void pruneSupersededCodeBlocks() {
+        List<ChatMessage> messages = List.of(
+                UserMessage.from("做一个网站"),
+                AiMessage.from("""
+                        第一版
+                        ```html
+                        <h1>v1</h1>
+                        ```
+                        ```css
+                        h1 { color: red; }
+                        ```
+                        """),
+                UserMessage.from("改一下标题"),
+                AiMessage.from("""
+                        第二版
+                        ```html
+                        <h1>v2</h1>
+                        ```
+                        """)
+        );
+        List<ChatMessage> pruned = SupersededCodePruner.prune(messages);
+        String first = ((AiMessage) pruned.get(1)).text();
+        // 旧的 index.html 替换为引用，没有更新过的 style.css 保留
+        assertFalse(first.contains("<h1>v1</h1>"));
+        assertTrue(first.contains("[旧版本已省略] index.html"));
+        assertTrue(first.contains("h1 { color: red; }"));
+        assertEquals(messages.get(3), pruned.get(3));
+        // 重复裁剪结果不变
+        assertSame(pruned, SupersededCodePruner.prune(pruned));
+    }
+
+    @Test
+    void pruneSupersededToolWrites() {
+        List<ChatMessage> messages = List.of(
+                AiMessage.from("""
+                        [工具调用] 写入文件 src/App.vue
+                        ```vue
+                        <template>v1</template>
+                        ```
+                        """),
+                AiMessage.from(List.of(ToolExecutionRequest.builder()
+                        .id("1")
+                        .name("writeFile")
+                        .arguments("{\"relativeFilePath\":\"src/App.vue\",\"content\":\"<template>v2</template>\"}")
+                        .build()))
+        );
+        List<ChatMessage> pruned = SupersededCodePruner.prune(messages);
+        String first = ((AiMessage) pruned.get(0)).text();
+        assertTrue(first.startsWith("[工具调用] 写入文件 src/App.vue\n[旧版本已省略] src/App.vue"));
+        assertSame(messages.get(1), pruned.get(1));
+    }
+}
@@ -0,0 +1,102 @@
+package com.chiikawa.chiikawacoding;
+
+import com.chiikawa.chiikawacoding.ai.memory.TokenBudgetChatMemory;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBudgetChatMemoryTest {
+
+    /**
+     * 每条消息按 10 个 token 计算
+     */
+    private static final TokenCountEstimator TEN_PER_MESSAGE = new TokenCountEstimator() {
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return 10;
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            return 10;
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int total = 0;
+            for (ChatMessage message : messages) {
+                total += 10;
+            }
+            return total;
+        }
+    };
+
+    private static final SystemMessage SYSTEM = SystemMessage.from("你是网页生成助手");
+
+    @Test
+    void keepWithinBudget() {
+        List<ChatMessage> messages = List.of(SYSTEM, UserMessage.from("u1"), AiMessage.from("a1"));
+        assertEquals(messages, memoryOf(messages, 30).messages());
+    }
+
+    @Test
+    void evictOldestTurnsButKeepSystemCodeAndNewestTurn() {
+        UserMessage u1 = UserMessage.from("做一个网站");
+        AiMessage a1 = AiMessage.from("```html\n<h1>v1</h1>\n```");
+        UserMessage u4 = UserMessage.from("u4");
+        AiMessage a4 = AiMessage.from("a4");
+        List<ChatMessage> messages = List.of(SYSTEM, u1, a1,
+                UserMessage.from("u2"), AiMessage.from("a2"),
+                UserMessage.from("u3"), AiMessage.from("a3"),
+                u4, a4);
+        // 90 个 token，预算 50：跳过带代码的第一轮，淘汰第二、三轮
+        assertEquals(List.of(SYSTEM, u1, a1, u4, a4), memoryOf(messages, 50).messages());
+    }
+
+    @Test
+    void evictWholeTurnWithToolMessages() {
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+                .id("call-1")
+                .name("readFile")
+                .arguments("{\"relativeFilePath\":\"index.html\"}")
+                .build();
+        UserMessage u2 = UserMessage.from("改一下标题");
+        AiMessage a2 = AiMessage.from("```html\n<h1>v2</h1>\n```");
+        UserMessage u3 = UserMessage.from("u3");
+        AiMessage a3 = AiMessage.from("a3");
+        List<ChatMessage> messages = List.of(
+                UserMessage.from("u1"), AiMessage.from(List.of(request)),
+                ToolExecutionResultMessage.from(request, "<h1>v1</h1>"), AiMessage.from("a1"),
+                u2, a2, u3, a3);
+        // 工具调用和结果随所在轮次一起淘汰，不会只剩一半
+        assertEquals(List.of(u2, a2, u3, a3), memoryOf(messages, 40).messages());
+    }
+
+    @Test
+    void keepRequiredMessagesEvenOverBudget() {
+        UserMessage u1 = UserMessage.from("做一个网站");
+        AiMessage a1 = AiMessage.from("```html\n<h1>v1</h1>\n```");
+        UserMessage u3 = UserMessage.from("u3");
+        AiMessage a3 = AiMessage.from("a3");
+        List<ChatMessage> messages = List.of(SYSTEM, u1, a1,
+                UserMessage.from("u2"), AiMessage.from("a2"),
+                u3, a3);
+        assertEquals(List.of(SYSTEM, u1, a1, u3, a3), memoryOf(messages, 10).messages());
+    }
+
+    private TokenBudgetChatMemory memoryOf(List<ChatMessage> messages, int maxTokens) {
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        store.updateMessages(1L, messages);
+        return new TokenBudgetChatMemory(1L, store, maxTokens, TEN_PER_MESSAGE);
+    }
+}